@@ -0,0 +1,365 @@
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * This class measures the hot paths of the field (getLegalPoints,
+ * isLegal, getFlippedPoints, flipPieces, checkWin, and makeMove with
+ * unmakeMove) on a fixed set of opening, midgame and endgame positions,
+ * next to the single board and batched bitboard calls they can be
+ * compared with, and the two evaluators as the search uses them: a move
+ * played, the position judged, and the move taken back. Moves are also
+ * found on fields of other sizes, next to checking each square in turn.
+ * Each one is warmed up, then timed over several iterations, and the
+ * bytes allocated per call are read from the thread's allocation
+ * counter, the same number the GC profiler of JMH gives. JMH itself
+ * can't be used here, since it only runs benchmarks outside the default
+ * package.
+ *
+ * Like JMH, each benchmark runs in a java of its own, started with the
+ * same class path. Otherwise the loop that times them would have seen
+ * every benchmark's code by the time the later ones run, and would call
+ * it more slowly than the search does.
+ *
+ * Usage: java FieldBenchmark [iteration milliseconds] [benchmark]
+ * where the benchmark is one name as printed, to run just that one in
+ * this java.
+ */
+
+public class FieldBenchmark {
+
+	// the plies the corpus positions are taken from, and how many of each
+	private static final String[] PHASES = { "opening", "midgame", "endgame" };
+	private static final int[] PHASE_PLIES = { 8, 30, 50 };
+	private static final int POSITIONS = 16;
+
+	// fixed seed so every run uses the same positions
+	private static final long SEED = 20200327;
+
+	// iterations run before and during measurement
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 5;
+
+	// calls made between looks at the clock
+	private static final int BATCH = 1024;
+
+	// boards handed to BatchMoves in one call, the corpus repeated
+	private static final int BATCH_BOARDS = 1024;
+
+	// the other field sizes moves are found on
+	private static final int[] VARIANT_SIZES = { 6, 8, 10, 16 };
+
+	// keeps results alive so the calls can't be optimized away
+	private static long sink;
+
+	// the one benchmark this java measures, or null to start a java for each
+	private static String only;
+	private static boolean measured;
+
+	// one call of the code being measured, given a counter to pick a position with
+	private interface Operation {
+		long run(int i);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		only = args.length > 1 ? args[1] : null;
+
+		if (only == null)
+			System.out.printf("%-30s %12s %10s %14s %10s%n", "benchmark", "ns/op", "error", "ops/s", "B/op");
+
+		for (int phase = 0; phase < PHASES.length; phase++) {
+
+			// set up the corpus for this phase
+			List<long[]> positions = corpus(PHASE_PLIES[phase]);
+			int n = positions.size();
+			Field[] fields = new Field[n];
+			Point[] moves = new Point[n];
+			int[] moveSquares = new int[n];
+			Point[] squares = new Point[Bitboard.SQUARES];
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			ArrayList<Point>[] flips = new ArrayList[n];
+
+			for (int i = 0; i < n; i++) {
+				long[] position = positions.get(i);
+				fields[i] = new Field(position[0], position[1], (int) position[2]);
+				moves[i] = fields[i].getLegalPoints().get(0);
+				moveSquares[i] = Bitboard.index(moves[i].x, moves[i].y);
+				flips[i] = fields[i].getFlippedPoints(moves[i]);
+			}
+			for (int i = 0; i < Bitboard.SQUARES; i++)
+				squares[i] = new Point(Bitboard.x(i), Bitboard.y(i));
+
+			String name = PHASES[phase];
+
+			run(name + " getLegalPoints", millis, i -> fields[i % n].getLegalPoints().size());
+
+			// every square is asked about in turn, legal or not
+			run(name + " isLegal", millis, i -> fields[i % n].isLegal(squares[i & 63]) ? 1 : 0);
+
+			run(name + " getFlippedPoints", millis, i -> fields[i % n].getFlippedPoints(moves[i % n]).size());
+
+			// a move and taking it back leaves the position as it was
+			run(name + " makeMove+unmakeMove", millis, i -> {
+				Field field = fields[i % n];
+				long flipped = field.makeMove(moveSquares[i % n]);
+				field.unmakeMove(moveSquares[i % n], flipped);
+				return flipped;
+			});
+
+			// flipping the same pieces again does the same work, so the position doesn't need resetting
+			run(name + " flipPieces", millis, i -> {
+				fields[i % n].flipPieces(flips[i % n]);
+				return 0;
+			});
+
+			run(name + " checkWin", millis, i -> fields[i % n].checkWin() ? 1 : 0);
+
+			// the raw bitboard calls, for comparison
+			run(name + " Bitboard.legalMoves", millis, i -> {
+				long[] position = positions.get(i % n);
+				return Bitboard.legalMoves(position[0], position[1]);
+			});
+
+			run(name + " Bitboard.flips", millis, i -> {
+				long[] position = positions.get(i % n);
+				return Bitboard.flips(position[0], position[1], moveSquares[i % n]);
+			});
+
+			// the batched calls, timed per board
+			long[] own = new long[BATCH_BOARDS], opp = new long[BATCH_BOARDS], out = new long[BATCH_BOARDS];
+			int[] batchMoves = new int[BATCH_BOARDS];
+			for (int i = 0; i < BATCH_BOARDS; i++) {
+				own[i] = positions.get(i % n)[0];
+				opp[i] = positions.get(i % n)[1];
+				batchMoves[i] = moveSquares[i % n];
+			}
+
+			run(name + " BatchMoves.legalMoves", millis, BATCH_BOARDS, i -> {
+				BatchMoves.legalMoves(own, opp, out, BATCH_BOARDS);
+				return out[i % BATCH_BOARDS];
+			});
+
+			run(name + " BatchMoves.flips", millis, BATCH_BOARDS, i -> {
+				BatchMoves.flips(own, opp, batchMoves, out, BATCH_BOARDS);
+				return out[i % BATCH_BOARDS];
+			});
+
+			// the evaluators, given every position once so they can follow moves from it
+			PatternEvaluator[] patterns = new PatternEvaluator[n];
+			NetworkEvaluator[] networks = new NetworkEvaluator[n];
+			long[] moveFlips = new long[n];
+			for (int i = 0; i < n; i++) {
+				long[] position = positions.get(i);
+				long one = position[2] == Field.PLAYER_ONE ? position[0] : position[1];
+				long two = position[2] == Field.PLAYER_ONE ? position[1] : position[0];
+				patterns[i] = new PatternEvaluator();
+				patterns[i].setPosition(one, two);
+				networks[i] = new NetworkEvaluator();
+				networks[i].setPosition(one, two);
+				moveFlips[i] = Bitboard.flips(position[0], position[1], moveSquares[i]);
+			}
+
+			run(name + " PatternEvaluator", millis, i -> evaluate(patterns[i % n], positions.get(i % n),
+					moveSquares[i % n], moveFlips[i % n]));
+
+			run(name + " NetworkEvaluator", millis, i -> evaluate(networks[i % n], positions.get(i % n),
+					moveSquares[i % n], moveFlips[i % n]));
+		}
+
+		// move generation on fields of other sizes, next to checking every square one at a time
+		for (int size : VARIANT_SIZES) {
+			VariantBoard[] boards = variantCorpus(size);
+			int n = boards.length;
+			int[] moves = new int[size * size];
+			String name = "variant " + size + "x" + size;
+
+			run(name + " legalMoves", millis, i -> boards[i % n].legalMoves(Field.PLAYER_ONE, moves));
+
+			run(name + " isLegal scan", millis, i -> {
+				VariantBoard board = boards[i % n];
+				int count = 0;
+				for (int square = 0; square < board.getSquares(); square++)
+					if (board.isLegal(Field.PLAYER_ONE, square))
+						count++;
+				return count;
+			});
+		}
+
+		if (only != null && !measured)
+			System.out.println("No benchmark called " + only);
+
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static long evaluate(Evaluator evaluator, long[] position, int move, long flips) {
+		// what the search does at a leaf: play a move, judge the position, and take the move back
+		int player = (int) position[2];
+		evaluator.play(player, move, flips);
+		int value = evaluator.evaluate(player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE);
+		evaluator.undo(player, move, flips);
+		return value;
+	}
+
+	private static List<long[]> corpus(int plies) {
+		// plays seeded random games to a ply and keeps the positions with a legal move,
+		// as { player to move's pieces, other pieces, player to move }
+
+		Random random = new Random(SEED + plies);
+		List<long[]> positions = new ArrayList<>();
+
+		while (positions.size() < POSITIONS) {
+			long own = Bitboard.START_ONE, opp = Bitboard.START_TWO;
+			int player = Field.PLAYER_ONE;
+
+			for (int ply = 0; ply < plies; ply++) {
+				long moves = Bitboard.legalMoves(own, opp);
+
+				// a pass just gives the turn away
+				if (moves != 0) {
+					for (int skip = random.nextInt(Bitboard.count(moves)); skip > 0; skip--)
+						moves &= moves - 1;
+					int move = Long.numberOfTrailingZeros(moves);
+					long flips = Bitboard.flips(own, opp, move);
+					own |= flips | (1L << move);
+					opp &= ~flips;
+				}
+
+				long swap = own;
+				own = opp;
+				opp = swap;
+				player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			}
+
+			if (Bitboard.legalMoves(own, opp) != 0) {
+				if (player == Field.PLAYER_ONE)
+					positions.add(new long[] { own, opp, player });
+				else
+					positions.add(new long[] { opp, own, player });
+			}
+		}
+
+		return positions;
+	}
+
+	private static VariantBoard[] variantCorpus(int size) {
+		// plays seeded random games on a field of the size until half of it is filled,
+		// keeping the positions where player one has a move
+
+		Random random = new Random(SEED + size);
+		VariantBoard[] boards = new VariantBoard[POSITIONS];
+		int[] moves = new int[size * size];
+
+		for (int found = 0; found < POSITIONS;) {
+			VariantBoard board = VariantBoard.create(size);
+			int player = Field.PLAYER_ONE;
+
+			for (int ply = 0; ply < size * size / 2; ply++) {
+				int count = board.legalMoves(player, moves);
+				if (count > 0)
+					board.play(player, moves[random.nextInt(count)]);
+				player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			}
+
+			if (board.hasMoves(Field.PLAYER_ONE))
+				boards[found++] = board;
+		}
+
+		return boards;
+	}
+
+	private static void run(String name, long millis, Operation operation) throws IOException, InterruptedException {
+		run(name, millis, 1, operation);
+	}
+
+	private static void run(String name, long millis, int boards, Operation operation)
+			throws IOException, InterruptedException {
+		// warms up, measures and prints one benchmark, per board when each call does many
+
+		if (only == null) {
+			fork(name, millis);
+			return;
+		}
+		if (!name.equals(only))
+			return;
+		measured = true;
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			iteration(operation, millis, null);
+
+		double[] nanos = new double[ITERATIONS];
+		double bytes = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			double[] result = new double[2];
+			iteration(operation, millis, result);
+			nanos[i] = result[0] / boards;
+			bytes += result[1] / boards / ITERATIONS;
+		}
+
+		// mean and standard deviation over the iterations
+		double mean = 0, deviation = 0;
+		for (double value : nanos)
+			mean += value / ITERATIONS;
+		for (double value : nanos)
+			deviation += (value - mean) * (value - mean) / (ITERATIONS - 1);
+		deviation = Math.sqrt(deviation);
+
+		System.out.printf("%-30s %12.2f %10.2f %14.0f %10.1f%n", name, mean, deviation, 1e9 / mean, bytes);
+	}
+
+	private static void fork(String name, long millis) throws IOException, InterruptedException {
+		// runs one benchmark in a new java, which prints its line here
+
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(FieldBenchmark.class.getName());
+		command.add(String.valueOf(millis));
+		command.add(name);
+
+		int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+		if (exit != 0)
+			throw new IOException(name + " failed with exit code " + exit);
+	}
+
+	private static void iteration(Operation operation, long millis, double[] result) {
+		// calls the operation for a while, giving nanoseconds and bytes allocated per call
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		long end = start + millis * 1000000;
+		long calls = 0, now;
+		long local = 0;
+
+		// the counter is kept positive past Integer.MAX_VALUE calls, so picking a position never goes
+		// negative, and the corpus sizes are powers of two so the positions still go round in turn
+		do {
+			for (int i = 0; i < BATCH; i++)
+				local += operation.run((int) ((calls + i) & Integer.MAX_VALUE));
+			calls += BATCH;
+			now = System.nanoTime();
+		} while (now < end);
+
+		sink += local;
+
+		if (result != null) {
+			result[0] = (double) (now - start) / calls;
+			result[1] = (double) (allocatedBytes() - allocated) / calls;
+		}
+	}
+
+	private static long allocatedBytes() {
+		// bytes allocated by this thread so far
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
@@ -0,0 +1,225 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * This class keeps deep search results in a file, so what one run of the
+ * engine or the analyzer found is still there for the next. It works
+ * like the TranspositionTable, but its buckets live in a memory mapped
+ * file instead of the heap. Each bucket is four slots of a hash xored
+ * with its data and the data itself, packed the way the table packs it,
+ * and a new result pushes out the shallowest one in its bucket.
+ *
+ * Searches read the file directly, and only ask for results of at least
+ * the cache's minimum depth, so the file is only touched for the few
+ * positions near the root. Results to keep are handed to a writer thread
+ * through a short queue and dropped if it is full, so a search never
+ * waits on the disk. Other processes can map the same file at once: a
+ * slot half written by one of them fails to match, just like in the
+ * table. The scores only make sense to the evaluator that found them,
+ * so each evaluator should have its own file.
+ *
+ * A file is CACHE_MAGIC, the number of buckets, and then the buckets.
+ */
+
+public class AnalysisCache implements Closeable {
+
+	public static final int DEFAULT_MEGABYTES = 256;
+	public static final int DEFAULT_MIN_DEPTH = 6;
+
+	// the start of every cache file, "OAC1"
+	public static final int CACHE_MAGIC = 0x4F414331;
+
+	// the bytes before the first bucket, so buckets line up with cache lines
+	private static final int HEADER_BYTES = 64;
+
+	// slots in a bucket, and the bytes of a slot: the hash xored with the data, then the data
+	private static final int SLOTS = 4;
+	private static final int SLOT_BYTES = 16;
+	private static final int BUCKET_BYTES = SLOTS * SLOT_BYTES;
+
+	// the largest file one buffer can map
+	private static final int MAX_MEGABYTES = 1024;
+
+	// results that may wait for the writer
+	private static final int QUEUE_SIZE = 4096;
+
+	// handed to the writer to make it stop
+	private static final long[] END = new long[0];
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buckets;
+	private final int bucketMask;
+	private final int minDepth;
+
+	private final BlockingQueue<long[]> writes = new ArrayBlockingQueue<>(QUEUE_SIZE);
+	private final Thread writer;
+
+	// what the cache has done, for reports
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public AnalysisCache(String name, int megabytes, int minDepth) throws IOException {
+		// opens the cache file, making it the given size if it doesn't exist yet,
+		// otherwise keeping the size it was made with
+
+		this.minDepth = minDepth;
+		file = new RandomAccessFile(name, "rw");
+
+		try {
+			FileChannel channel = file.getChannel();
+			int count;
+
+			// the lock stops two processes making the same file at once
+			FileLock lock = channel.lock();
+			try {
+				if (file.length() == 0) {
+					long bytes = (long) Math.max(1, Math.min(megabytes, MAX_MEGABYTES)) * 1024 * 1024;
+					count = Integer.highestOneBit((int) ((bytes - HEADER_BYTES) / BUCKET_BYTES));
+
+					ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+					header.putInt(CACHE_MAGIC).putInt(count).flip();
+					channel.write(header, 0);
+					file.setLength(HEADER_BYTES + (long) count * BUCKET_BYTES);
+				} else {
+					ByteBuffer header = ByteBuffer.allocate(8);
+					channel.read(header, 0);
+					header.flip();
+					count = header.remaining() == 8 && header.getInt() == CACHE_MAGIC ? header.getInt() : 0;
+
+					if (count <= 0 || Integer.bitCount(count) != 1
+							|| file.length() != HEADER_BYTES + (long) count * BUCKET_BYTES)
+						throw new IOException(name + " is not an analysis cache");
+				}
+			} finally {
+				lock.release();
+			}
+
+			buckets = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) count * BUCKET_BYTES);
+			bucketMask = count - 1;
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+
+		writer = new Thread(this::write, "cache-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public int getMinDepth() {
+		return minDepth;
+	}
+
+	public long probe(long hash) {
+		// gives the data stored for a hash, packed like the table's, or 0 if there is none
+
+		int bucket = HEADER_BYTES + ((int) hash & bucketMask) * BUCKET_BYTES;
+		for (int slot = bucket; slot < bucket + BUCKET_BYTES; slot += SLOT_BYTES) {
+
+			// read each slot once, since another thread or process may be writing it
+			long entry = buckets.getLong(slot + 8);
+			if ((buckets.getLong(slot) ^ entry) == hash && entry != 0) {
+				hits.incrementAndGet();
+				return entry;
+			}
+		}
+		return 0;
+	}
+
+	public void store(long hash, int depth, int bound, int score, int move) {
+		// hands a result to the writer, unless it's too shallow or the writer is too far behind
+		if (depth < minDepth)
+			return;
+		if (!writes.offer(new long[] { hash, TranspositionTable.pack(depth, bound, score, move, 0) }))
+			dropped.incrementAndGet();
+	}
+
+	private void write() {
+		// writes results into the file until close
+
+		try {
+			for (long[] result = writes.take(); result != END; result = writes.take())
+				write(result[0], result[1]);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void write(long hash, long entry) {
+		// puts a result in its bucket, over the same position if it is there and no deeper,
+		// otherwise over the shallowest slot
+
+		int bucket = HEADER_BYTES + ((int) hash & bucketMask) * BUCKET_BYTES;
+		int target = bucket;
+		int shallowest = Integer.MAX_VALUE;
+
+		for (int slot = bucket; slot < bucket + BUCKET_BYTES; slot += SLOT_BYTES) {
+			long old = buckets.getLong(slot + 8);
+
+			if ((buckets.getLong(slot) ^ old) == hash && old != 0) {
+				if (TranspositionTable.depth(old) > TranspositionTable.depth(entry))
+					return;
+				target = slot;
+				break;
+			}
+
+			// an empty slot counts as shallower than any result
+			int depth = old == 0 ? -1 : TranspositionTable.depth(old);
+			if (depth < shallowest) {
+				shallowest = depth;
+				target = slot;
+			}
+		}
+
+		buckets.putLong(target, hash ^ entry);
+		buckets.putLong(target + 8, entry);
+		written.incrementAndGet();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getWritten() {
+		return written.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// writes what is still waiting, then saves the file
+
+		try {
+			writes.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		buckets.force();
+		file.close();
+	}
+
+	public static AnalysisCache open(String name) {
+		// opens a cache with the default size and depth, or gives null if it can't be opened
+		try {
+			return new AnalysisCache(name, DEFAULT_MEGABYTES, DEFAULT_MIN_DEPTH);
+		} catch (IOException e) {
+			System.err.println("Could not open the analysis cache: " + e.getMessage());
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * This class scores a file of positions on a pool of worker threads,
+ * each searching to a fixed depth or number of positions. The answers
+ * are written in the same order as the input, and only a fixed number
+ * of positions are ever waiting to be searched or written, since reading
+ * waits for room, so files of any size can be analyzed.
+ *
+ * Usage: java Analyzer <input> <output> [depth] [threads] [node limit] [cache file]
+ * where the input and output may be - for standard input and output.
+ * With a cache file, the deep results of every search are kept in an
+ * AnalysisCache, so running the same positions again picks up where the
+ * last run stopped.
+ *
+ * Each input line is a field as 64 squares from a1 to h8 (x, o and -)
+ * and the player to move (x or o). Each output line repeats the position
+ * and adds the best move and its score for the player to move, "pass"
+ * when the player has to pass, or "-" and the final disc difference when
+ * the game is over. Lines that can't be read are answered with "error".
+ */
+
+public class Analyzer {
+
+	public static final int DEFAULT_DEPTH = 8;
+
+	// how many positions each worker may have waiting, which limits the memory used
+	private static final int WINDOW_PER_THREAD = 64;
+
+	// each worker's table
+	private static final int HASH_MB = 16;
+
+	// how often progress is reported, in milliseconds
+	private static final long REPORT_INTERVAL = 10000;
+
+	// how often reading looks at whether the writer has failed while it waits for room, in milliseconds
+	private static final long FAILURE_CHECK = 100;
+
+	private int threads;
+
+	// each worker keeps its own search and table for every position it is given
+	private ThreadLocal<Search> searches;
+
+	public Analyzer(int depth, long nodeLimit, int threads) {
+		this(depth, nodeLimit, threads, null);
+	}
+
+	public Analyzer(int depth, long nodeLimit, int threads, AnalysisCache cache) {
+		this.threads = threads;
+		searches = ThreadLocal.withInitial(() -> {
+			Search search = new Search(new TranspositionTable(HASH_MB), depth, nodeLimit);
+			search.setCache(cache);
+			return search;
+		});
+	}
+
+	public long analyze(BufferedReader in, Writer out) throws IOException, InterruptedException {
+		// analyzes every line of the input and gives the number of positions
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		// positions in input order, reading waits here while the queue is full
+		BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(threads * WINDOW_PER_THREAD);
+
+		// the end of the input, since a queue can't hold null
+		Future<String> end = pool.submit(() -> "");
+
+		// what stopped the writer, if it failed, so reading stops too instead of waiting for room forever
+		AtomicReference<Exception> failure = new AtomicReference<>();
+
+		// writes the answers in order on its own thread while this one reads
+		Thread writer = new Thread(() -> write(pending, end, out, failure), "analyzer-writer");
+		writer.start();
+
+		long count = 0;
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.trim().isEmpty())
+					continue;
+
+				String position = line.trim();
+				Future<String> answer = pool.submit(() -> analyze(position));
+				if (!put(pending, answer, failure)) {
+					answer.cancel(true);
+					break;
+				}
+				count++;
+			}
+		} finally {
+			put(pending, end, failure);
+			writer.join();
+
+			// nothing waiting will be written once the writer has failed
+			if (failure.get() != null) {
+				for (Future<String> answer : pending)
+					answer.cancel(true);
+				pool.shutdownNow();
+			} else
+				pool.shutdown();
+		}
+
+		Exception e = failure.get();
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof ExecutionException)
+			throw new IOException("Could not analyze a position", e.getCause());
+		if (e != null)
+			throw new IOException(e);
+
+		return count;
+	}
+
+	private static boolean put(BlockingQueue<Future<String>> pending, Future<String> answer,
+			AtomicReference<Exception> failure) throws InterruptedException {
+		// waits for room in the queue, giving false if the writer fails first
+		while (!pending.offer(answer, FAILURE_CHECK, TimeUnit.MILLISECONDS))
+			if (failure.get() != null)
+				return false;
+		return true;
+	}
+
+	private void write(BlockingQueue<Future<String>> pending, Future<String> end, Writer out,
+			AtomicReference<Exception> failure) {
+		long start = System.currentTimeMillis();
+		long lastReport = start;
+		long written = 0;
+
+		try {
+			while (true) {
+				Future<String> next = pending.take();
+				if (next == end)
+					break;
+
+				out.write(next.get());
+				out.write('\n');
+				written++;
+
+				long now = System.currentTimeMillis();
+				if (now - lastReport >= REPORT_INTERVAL) {
+					lastReport = now;
+					report(written, now - start);
+				}
+			}
+			out.flush();
+			report(written, System.currentTimeMillis() - start);
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			failure.set(e);
+		}
+	}
+
+	private static void report(long positions, long millis) {
+		System.err.printf("%d positions in %.1f s, %.0f positions per second%n", positions, millis / 1000.0,
+				positions * 1000.0 / Math.max(1, millis));
+	}
+
+	String analyze(String line) {
+		// scores one position, giving the line to write for it
+
+		String[] words = line.split("\\s+");
+		if (words.length < 2)
+			return line + " error missing the player to move";
+
+		int player;
+		String side = words[1].toLowerCase();
+		if (side.equals("x") || side.equals("b") || side.equals("black"))
+			player = Field.PLAYER_ONE;
+		else if (side.equals("o") || side.equals("w") || side.equals("white"))
+			player = Field.PLAYER_TWO;
+		else
+			return line + " error not a player: " + words[1];
+
+		long own, opp;
+		try {
+			own = Bitboard.fromText(words[0], player);
+			opp = Bitboard.fromText(words[0], player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE);
+		} catch (IllegalArgumentException e) {
+			return line + " error " + e.getMessage();
+		}
+
+		String position = words[0] + " " + words[1];
+		Search search = searches.get();
+
+		if (Bitboard.legalMoves(own, opp) == 0) {
+
+			// the game is over if neither player can move
+			if (Bitboard.legalMoves(opp, own) == 0)
+				return position + " - " + (Bitboard.count(own) - Bitboard.count(opp));
+
+			// otherwise the score is the opposite of the other player's after the pass
+			int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			search.findMove(opp, own, other);
+			return position + " pass " + -search.getScore();
+		}
+
+		int move = search.findMove(own, opp, player);
+		return position + " " + Bitboard.toText(move) + " " + search.getScore();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Usage: java Analyzer <input> <output> [depth] [threads] [node limit] [cache file]");
+			return;
+		}
+
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+		if (depth < 1) {
+			System.out.println("The depth must be at least 1");
+			return;
+		}
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long nodeLimit = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		AnalysisCache cache = args.length > 5 ? new AnalysisCache(args[5], AnalysisCache.DEFAULT_MEGABYTES,
+				Math.min(depth, AnalysisCache.DEFAULT_MIN_DEPTH)) : null;
+
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				args[0].equals("-") ? System.in : new FileInputStream(args[0]), StandardCharsets.US_ASCII));
+				Writer out = new BufferedWriter(new OutputStreamWriter(
+						args[1].equals("-") ? System.out : new FileOutputStream(args[1]), StandardCharsets.US_ASCII))) {
+
+			new Analyzer(depth, nodeLimit, threads, cache).analyze(in, out);
+		} finally {
+			if (cache != null) {
+				cache.close();
+				System.err.println("Cache: " + cache.getHits() + " hits, " + cache.getWritten() + " results written, "
+						+ cache.getDropped() + " dropped");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * This class holds the bitboard helpers used by the field. A board is
+ * two longs, one for each player, where square (x, y) is bit y * 8 + x.
+ * Legal moves and flips are found by shifting a whole mask along each
+ * of the 4 lines (sideways, up and down, and the two diagonals) in both
+ * directions instead of walking the field square by square.
+ */
+
+public final class Bitboard {
+
+	// the width of the board and the number of squares on it
+	public static final int SIZE = 8;
+	public static final int SQUARES = SIZE * SIZE;
+
+	// masks that stop pieces from wrapping around the left and right edges
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long FILE_H = 0x8080808080808080L;
+	public static final long NOT_FILE_A = ~FILE_A;
+	public static final long NOT_FILE_H = ~FILE_H;
+
+	// every square except the left and right edges
+	private static final long INNER = NOT_FILE_A & NOT_FILE_H;
+
+	// the starting position, from player one's and player two's point of view
+	public static final long START_ONE = square(3, 3) | square(4, 4);
+	public static final long START_TWO = square(4, 3) | square(3, 4);
+
+	private Bitboard() {
+	}
+
+	public static int index(int x, int y) {
+		// gives the bit index of a point on the field
+		return y * SIZE + x;
+	}
+
+	public static long square(int x, int y) {
+		// gives the mask with only the given point set
+		return 1L << index(x, y);
+	}
+
+	public static int x(int index) {
+		return index & (SIZE - 1);
+	}
+
+	public static int y(int index) {
+		return index >>> 3;
+	}
+
+	public static long legalMoves(long own, long opp) {
+		// finds every empty square that would flip at least one of the opponent's pieces
+
+		// pieces on the left and right edges can't be flipped sideways or diagonally,
+		// so leaving them out also stops lines from wrapping around the edges
+		long inner = opp & INNER;
+
+		long moves = lineEnds(own, inner, 1) | lineEnds(own, opp, 8)
+				| lineEnds(own, inner, 7) | lineEnds(own, inner, 9);
+
+		// an empty square at the end of a line is a legal move
+		return moves & ~(own | opp);
+	}
+
+	private static long lineEnds(long own, long opp, int s) {
+		// grows lines of the opponent's pieces out from each of our pieces in both
+		// directions along one axis, and gives the squares just past their ends
+
+		long up = opp & (own << s);
+		long down = opp & (own >>> s);
+		up |= opp & (up << s);
+		down |= opp & (down >>> s);
+
+		// then grow two squares at a time over pairs of the opponent's pieces
+		long pairsUp = opp & (opp << s);
+		long pairsDown = pairsUp >>> s;
+		up |= pairsUp & (up << (s * 2));
+		down |= pairsDown & (down >>> (s * 2));
+		up |= pairsUp & (up << (s * 2));
+		down |= pairsDown & (down >>> (s * 2));
+
+		return (up << s) | (down >>> s);
+	}
+
+	public static long flips(long own, long opp, int index) {
+		// finds the opponent's pieces that are flipped by a move on the given square
+
+		long move = 1L << index;
+		long inner = opp & INNER;
+
+		return flipsUp(own, inner, move, 1) | flipsDown(own, inner, move, 1)
+				| flipsUp(own, opp, move, 8) | flipsDown(own, opp, move, 8)
+				| flipsUp(own, inner, move, 7) | flipsDown(own, inner, move, 7)
+				| flipsUp(own, inner, move, 9) | flipsDown(own, inner, move, 9);
+	}
+
+	private static long flipsUp(long own, long opp, long move, int s) {
+		// walks over the opponent's pieces towards higher squares, they are only
+		// flipped if one of our pieces closes the line
+		long line = 0;
+		long b = move << s;
+		while ((b & opp) != 0) {
+			line |= b;
+			b <<= s;
+		}
+		return (b & own) != 0 ? line : 0;
+	}
+
+	private static long flipsDown(long own, long opp, long move, int s) {
+		// the same towards lower squares
+		long line = 0;
+		long b = move >>> s;
+		while ((b & opp) != 0) {
+			line |= b;
+			b >>>= s;
+		}
+		return (b & own) != 0 ? line : 0;
+	}
+
+	public static int count(long b) {
+		return Long.bitCount(b);
+	}
+
+	public static long flipVertical(long b) {
+		// swaps the top and bottom rows (y becomes 7 - y)
+		return Long.reverseBytes(b);
+	}
+
+	public static long mirrorHorizontal(long b) {
+		// swaps the left and right columns (x becomes 7 - x)
+		b = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+		b = ((b >>> 2) & 0x3333333333333333L) | ((b & 0x3333333333333333L) << 2);
+		return ((b >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((b & 0x0F0F0F0F0F0F0F0FL) << 4);
+	}
+
+	public static long transpose(long b) {
+		// flips the field along its main diagonal (x and y swap)
+		long t = 0x0F0F0F0F00000000L & (b ^ (b << 28));
+		b ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (b ^ (b << 14));
+		b ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (b ^ (b << 7));
+		return b ^ t ^ (t >>> 7);
+	}
+
+	public static long transform(long b, int symmetry) {
+		// applies one of the 8 symmetries of the field: bit 4 transposes,
+		// then bit 1 mirrors and bit 2 flips
+		if ((symmetry & 4) != 0)
+			b = transpose(b);
+		if ((symmetry & 1) != 0)
+			b = mirrorHorizontal(b);
+		if ((symmetry & 2) != 0)
+			b = flipVertical(b);
+		return b;
+	}
+
+	public static int transformSquare(int index, int symmetry) {
+		// applies the same symmetry as transform to a single square
+		int x = x(index), y = y(index);
+		if ((symmetry & 4) != 0) {
+			int swap = x;
+			x = y;
+			y = swap;
+		}
+		if ((symmetry & 1) != 0)
+			x = SIZE - 1 - x;
+		if ((symmetry & 2) != 0)
+			y = SIZE - 1 - y;
+		return index(x, y);
+	}
+
+	public static String toText(int index) {
+		// names a square the standard way, a column letter and a row number (a1 to h8)
+		return "" + (char) ('a' + x(index)) + (y(index) + 1);
+	}
+
+	public static String toText(long one, long two) {
+		// writes a whole field as its 64 squares from a1 to h8, x for player one,
+		// o for player two and - for empty
+		StringBuilder text = new StringBuilder(SQUARES);
+		for (int square = 0; square < SQUARES; square++) {
+			long bit = 1L << square;
+			text.append((one & bit) != 0 ? 'x' : (two & bit) != 0 ? 'o' : '-');
+		}
+		return text.toString();
+	}
+
+	public static long fromText(String text, int player) {
+		// reads one player's pieces from a field written by toText, which also
+		// allows b, * or w for the pieces and . for empty
+		if (text.length() != SQUARES)
+			throw new IllegalArgumentException("A field needs " + SQUARES + " squares: " + text);
+
+		long one = 0, two = 0;
+		for (int square = 0; square < SQUARES; square++) {
+			char c = Character.toLowerCase(text.charAt(square));
+			if (c == 'x' || c == 'b' || c == '*')
+				one |= 1L << square;
+			else if (c == 'o' || c == 'w')
+				two |= 1L << square;
+			else if (c != '-' && c != '.')
+				throw new IllegalArgumentException("Not a square: " + c);
+		}
+		return player == Field.PLAYER_ONE ? one : two;
+	}
+
+	public static int fromText(String text) {
+		// reads a square named by toText
+		if (text.length() != 2)
+			throw new IllegalArgumentException("Not a square: " + text);
+
+		int x = Character.toLowerCase(text.charAt(0)) - 'a';
+		int y = text.charAt(1) - '1';
+		if (x < 0 || x >= SIZE || y < 0 || y >= SIZE)
+			throw new IllegalArgumentException("Not a square: " + text);
+		return index(x, y);
+	}
+
+}
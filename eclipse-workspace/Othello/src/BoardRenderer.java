@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * This class draws many games at once in one terminal, each board in its
+ * own tile of a grid, so games can be watched while they are played.
+ * The games only hand over their pieces with update, which costs three
+ * stores, and a thread of its own draws a frame a few times a second.
+ *
+ * Each frame is built in one buffer that is kept between frames and sent
+ * with a single write. Only the squares that changed since the last frame
+ * are drawn, by moving the cursor to them with ANSI escapes, so a frame
+ * in the middle of a game is usually a few dozen bytes.
+ *
+ * A board can be read halfway through an update, which only means a
+ * square is drawn a frame late.
+ */
+
+public class BoardRenderer {
+
+	// the size of a tile: a line for the game, the board, and a gap
+	private static final int TILE_WIDTH = Bitboard.SIZE * 2 + 4;
+	private static final int TILE_HEIGHT = Bitboard.SIZE + 2;
+
+	private static final byte[] CLEAR_SCREEN = bytes("\u001B[2J");
+	private static final byte[] HIDE_CURSOR = bytes("\u001B[?25l");
+	private static final byte[] SHOW_CURSOR = bytes("\u001B[?25h");
+	private static final byte[] ONE_COLOR = bytes(Field.ANSI_BLACK);
+	private static final byte[] TWO_COLOR = bytes(Field.ANSI_WHITE);
+	private static final byte[] RESET_COLOR = bytes(Field.ANSI_RESET);
+
+	private final int tiles, columns;
+	private final long frameNanos;
+	private final OutputStream out;
+
+	// what the games have handed over, by tile: game number, player one's pieces, player two's
+	private final AtomicLongArray games, ones, twos;
+
+	// what is on the screen, by tile
+	private final long[] drawnGames, drawnOnes, drawnTwos;
+	private boolean drawn;
+
+	// the frame being built, and where the cursor and color are left after what's in it
+	private byte[] frame = new byte[4096];
+	private int length;
+	private int cursorRow, cursorColumn;
+	private byte[] color;
+
+	private Thread thread;
+	private volatile boolean running;
+
+	public BoardRenderer(int tiles, int width, int framesPerSecond, OutputStream out) {
+		this.tiles = tiles;
+		this.columns = Math.max(1, Math.min(tiles, width / TILE_WIDTH));
+		this.frameNanos = 1000000000L / Math.max(1, framesPerSecond);
+		this.out = out;
+
+		games = new AtomicLongArray(tiles);
+		ones = new AtomicLongArray(tiles);
+		twos = new AtomicLongArray(tiles);
+		drawnGames = new long[tiles];
+		drawnOnes = new long[tiles];
+		drawnTwos = new long[tiles];
+
+		// tiles with no game yet are left blank
+		for (int i = 0; i < tiles; i++)
+			games.set(i, -1);
+	}
+
+	public int getTiles() {
+		return tiles;
+	}
+
+	public void update(int tile, long game, long one, long two) {
+		// called by the game in a tile after every move
+		games.lazySet(tile, game);
+		ones.lazySet(tile, one);
+		twos.lazySet(tile, two);
+	}
+
+	public void start() {
+		running = true;
+		thread = new Thread(() -> {
+			long next = System.nanoTime();
+			while (running) {
+				draw();
+
+				// wait for the next frame, or skip ahead if this one ran late
+				next = Math.max(next + frameNanos, System.nanoTime());
+				long wait = next - System.nanoTime();
+				if (wait > 0) {
+					try {
+						Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
+		}, "renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop() {
+		// draws the last frame and leaves the cursor under the grid
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		draw();
+		synchronized (this) {
+			length = 0;
+			moveTo((tiles + columns - 1) / columns * TILE_HEIGHT + 1, 1);
+			append(RESET_COLOR);
+			append(SHOW_CURSOR);
+			flush();
+		}
+	}
+
+	public synchronized void draw() {
+		// sends whatever changed since the last frame
+
+		length = 0;
+		if (!drawn) {
+			append(HIDE_CURSOR);
+			append(CLEAR_SCREEN);
+			cursorRow = -1;
+			color = null;
+		}
+
+		for (int tile = 0; tile < tiles; tile++) {
+			long game = games.get(tile);
+			if (game < 0)
+				continue;
+			long one = ones.get(tile), two = twos.get(tile);
+
+			int top = tile / columns * TILE_HEIGHT + 1;
+			int left = tile % columns * TILE_WIDTH + 1;
+
+			if (!drawn || game != drawnGames[tile] || one != drawnOnes[tile] || two != drawnTwos[tile])
+				header(top, left, game, one, two);
+
+			// on a new game every square is drawn again
+			long changed = ~0L;
+			if (drawn && game == drawnGames[tile])
+				changed = (one ^ drawnOnes[tile]) | (two ^ drawnTwos[tile]);
+
+			for (; changed != 0; changed &= changed - 1) {
+				int square = Long.numberOfTrailingZeros(changed);
+				moveTo(top + 1 + Bitboard.y(square), left + Bitboard.x(square) * 2);
+
+				long bit = 1L << square;
+				setColor((two & bit) != 0 ? TWO_COLOR : ONE_COLOR);
+				append(((one | two) & bit) != 0 ? 'O' : '_').append(' ');
+				cursorColumn += 2;
+			}
+
+			drawnGames[tile] = game;
+			drawnOnes[tile] = one;
+			drawnTwos[tile] = two;
+		}
+
+		drawn = true;
+		flush();
+	}
+
+	private void header(int row, int column, long game, long one, long two) {
+		// the game number and each player's pieces, padded to wipe out what was there
+
+		moveTo(row, column);
+		setColor(RESET_COLOR);
+		int start = length;
+		append("game ").append(game).append("  ").append(Bitboard.count(one)).append('-')
+				.append(Bitboard.count(two));
+		while (length - start < TILE_WIDTH - 2)
+			append(' ');
+		cursorColumn += length - start;
+	}
+
+	private void moveTo(int row, int column) {
+		// a cursor move is only needed when the cursor isn't already there
+		if (row == cursorRow && column == cursorColumn)
+			return;
+		append("\u001B[").append(row).append(';').append(column).append('H');
+		cursorRow = row;
+		cursorColumn = column;
+	}
+
+	private void setColor(byte[] newColor) {
+		if (newColor != color) {
+			append(newColor);
+			color = newColor;
+		}
+	}
+
+	private void flush() {
+		// one write for the whole frame, nothing at all when nothing changed
+		if (length == 0)
+			return;
+		try {
+			out.write(frame, 0, length);
+			out.flush();
+		} catch (IOException e) {
+			running = false;
+		}
+	}
+
+	private BoardRenderer append(char c) {
+		if (length == frame.length)
+			frame = Arrays.copyOf(frame, length * 2);
+		frame[length++] = (byte) c;
+		return this;
+	}
+
+	private BoardRenderer append(String text) {
+		for (int i = 0; i < text.length(); i++)
+			append(text.charAt(i));
+		return this;
+	}
+
+	private BoardRenderer append(long number) {
+		// digits straight into the frame, without a string in between
+		if (number < 0) {
+			append('-');
+			number = -number;
+		}
+		long divisor = 1;
+		while (divisor * 10 <= number)
+			divisor *= 10;
+		for (; divisor > 0; divisor /= 10)
+			append((char) ('0' + number / divisor % 10));
+		return this;
+	}
+
+	private void append(byte[] bytes) {
+		for (byte b : bytes)
+			append((char) b);
+	}
+
+	private static byte[] bytes(String text) {
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) text.charAt(i);
+		return bytes;
+	}
+
+}
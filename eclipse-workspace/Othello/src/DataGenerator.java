@@ -0,0 +1,364 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * This class makes positions to train evaluators on, by playing games of
+ * a computer player against itself on a pool of worker threads. Each game
+ * opens with a few random moves so no two games are alike, then some of
+ * its positions are picked and labelled with the final disc difference,
+ * or with the exact result of perfect play once few enough squares are
+ * left to solve.
+ *
+ * The positions are written to numbered shard files in a directory, each
+ * holding up to a fixed number of positions, with a shards.txt listing
+ * them. Workers hand over full batches through a short queue to one
+ * writer thread, so however many positions are asked for, only a few
+ * batches are ever held in memory.
+ *
+ * Usage: java DataGenerator <directory> <positions> [player] [threads] [solve empties] [shard positions] [seed]
+ *
+ * A shard is SHARD_MAGIC followed by RECORD_BYTES for each position:
+ * player one's pieces, player two's pieces, the label as player one's
+ * pieces minus player two's, and flags for player two to move (1) and an
+ * exact label (2).
+ */
+
+public class DataGenerator {
+
+	public static final String DEFAULT_PLAYER = "expert:3";
+	public static final int DEFAULT_SOLVE_EMPTIES = 14;
+	public static final int DEFAULT_SHARD_POSITIONS = 1000000;
+
+	// the start of every shard, "OTD1"
+	public static final int SHARD_MAGIC = 0x4F544431;
+
+	// the size of a position in a shard
+	public static final int RECORD_BYTES = 18;
+
+	// flags of a position
+	public static final int TWO_TO_MOVE = 1;
+	public static final int EXACT = 2;
+
+	// the random moves each game opens with, between these
+	private static final int MIN_RANDOM_PLIES = 4;
+	private static final int MAX_RANDOM_PLIES = 12;
+
+	// the share of the positions after the opening that are kept
+	private static final double SAMPLE_CHANCE = 0.25;
+
+	// positions in a batch, and batches that may wait for the writer
+	private static final int BATCH_POSITIONS = 4096;
+	private static final int BATCHES_PER_THREAD = 2;
+
+	// each worker's solver table
+	private static final int SOLVE_HASH_MB = 8;
+
+	// how often progress is reported, in milliseconds
+	private static final long REPORT_INTERVAL = 10000;
+
+	// handed to the writer after the last batch
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final String player;
+	private final int threads;
+	private final int solveEmpties;
+	private final int shardPositions;
+	private final long seed;
+
+	// positions still to be claimed by the workers, and games finished
+	private final AtomicLong unclaimed = new AtomicLong();
+	private final AtomicLong games = new AtomicLong();
+
+	public DataGenerator(String player, int threads, int solveEmpties, int shardPositions, long seed) {
+		this.player = player;
+		this.threads = threads;
+		this.solveEmpties = solveEmpties;
+		this.shardPositions = shardPositions;
+		this.seed = seed;
+
+		// make sure the name is a real player before any games start
+		if (!Player.isValid(player))
+			throw new IllegalArgumentException("Unknown player: " + player);
+	}
+
+	public List<String> generate(File directory, long positions) throws IOException, InterruptedException {
+		// writes the positions into shards in the directory and gives the shard names
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not make " + directory);
+
+		unclaimed.set(positions);
+		games.set(0);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		BlockingQueue<ByteBuffer> batches = new ArrayBlockingQueue<>(threads * BATCHES_PER_THREAD);
+
+		// the workers take game numbers in turn, each game seeded by its number,
+		// and are waited for in the order they finish so a failure is seen at once
+		CompletionService<Void> workers = new ExecutorCompletionService<>(pool);
+		for (int i = 0; i < threads; i++) {
+			int worker = i;
+			workers.submit(() -> {
+				play(worker, batches);
+				return null;
+			});
+		}
+
+		// what stopped a worker, if one failed
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		// the writer runs on this thread, so it sees any error writing straight away
+		List<String> shards;
+		try {
+			Thread ender = new Thread(() -> {
+				try {
+					for (int i = 0; i < threads; i++) {
+						try {
+							workers.take().get();
+						} catch (ExecutionException e) {
+							// the other workers stop after their game, the writer still drains their batches
+							failure.compareAndSet(null, e.getCause());
+							unclaimed.set(0);
+						}
+					}
+				} catch (InterruptedException e) {
+					failure.compareAndSet(null, e);
+					unclaimed.set(0);
+				}
+				try {
+					batches.put(END);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "generator-end");
+			ender.setDaemon(true);
+			ender.start();
+
+			shards = write(directory, batches);
+			ender.join();
+		} finally {
+			// stop the workers if writing failed
+			unclaimed.set(0);
+			pool.shutdownNow();
+		}
+
+		// a run cut short by a failed worker is an error, not a smaller set of positions
+		if (failure.get() != null)
+			throw new IOException("A worker failed after " + games.get() + " games", failure.get());
+
+		try (PrintWriter list = new PrintWriter(new File(directory, "shards.txt"))) {
+			for (String shard : shards)
+				list.println(shard);
+		}
+
+		return shards;
+	}
+
+	private void play(int worker, BlockingQueue<ByteBuffer> batches) throws InterruptedException {
+		// plays games until every position has been claimed, passing on full batches
+
+		Player computer = Player.create(player);
+		EndgameSolver solver = new EndgameSolver(new TranspositionTable(SOLVE_HASH_MB), solveEmpties, 0);
+		ByteBuffer batch = ByteBuffer.allocate(BATCH_POSITIONS * RECORD_BYTES);
+
+		// the positions of one game, waiting for the result
+		long[] ones = new long[Bitboard.SQUARES], twos = new long[Bitboard.SQUARES];
+		int[] players = new int[Bitboard.SQUARES];
+
+		for (long game = worker; unclaimed.get() > 0; game += threads) {
+			long gameSeed = seed + game;
+			Random random = new Random(gameSeed);
+			computer.newGame(gameSeed);
+
+			long one = Bitboard.START_ONE, two = Bitboard.START_TWO;
+			int turn = Field.PLAYER_ONE, kept = 0;
+			int randomPlies = MIN_RANDOM_PLIES + random.nextInt(MAX_RANDOM_PLIES - MIN_RANDOM_PLIES + 1);
+
+			for (int ply = 0;; ply++) {
+				long own = turn == Field.PLAYER_ONE ? one : two, opp = turn == Field.PLAYER_ONE ? two : one;
+				long moves = Bitboard.legalMoves(own, opp);
+
+				if (moves == 0) {
+					if (Bitboard.legalMoves(opp, own) == 0)
+						break;
+					turn = turn == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+					continue;
+				}
+
+				int move;
+				if (ply < randomPlies) {
+					for (int skip = random.nextInt(Bitboard.count(moves)); skip > 0; skip--)
+						moves &= moves - 1;
+					move = Long.numberOfTrailingZeros(moves);
+				} else {
+					if (random.nextDouble() < SAMPLE_CHANCE) {
+						ones[kept] = one;
+						twos[kept] = two;
+						players[kept++] = turn;
+					}
+					move = computer.chooseMove(own, opp, turn);
+				}
+
+				long flips = Bitboard.flips(own, opp, move);
+				own |= flips | (1L << move);
+				opp &= ~flips;
+				one = turn == Field.PLAYER_ONE ? own : opp;
+				two = turn == Field.PLAYER_ONE ? opp : own;
+				turn = turn == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			}
+
+			int result = Bitboard.count(one) - Bitboard.count(two);
+			games.incrementAndGet();
+
+			for (int i = 0; i < kept; i++) {
+				if (unclaimed.getAndDecrement() <= 0)
+					break;
+
+				// near the end the label is what perfect play gets, not what this game got
+				int label = result, flags = players[i] == Field.PLAYER_TWO ? TWO_TO_MOVE : 0;
+				long own = players[i] == Field.PLAYER_ONE ? ones[i] : twos[i];
+				long opp = players[i] == Field.PLAYER_ONE ? twos[i] : ones[i];
+				if (solver.canSolve(own, opp) && solver.solve(own, opp, players[i], true) >= 0) {
+					label = players[i] == Field.PLAYER_ONE ? solver.getScore() : -solver.getScore();
+					flags |= EXACT;
+				}
+
+				batch.putLong(ones[i]).putLong(twos[i]).put((byte) label).put((byte) flags);
+				if (!batch.hasRemaining()) {
+					batch.flip();
+					batches.put(batch);
+					batch = ByteBuffer.allocate(BATCH_POSITIONS * RECORD_BYTES);
+				}
+			}
+		}
+
+		if (batch.position() > 0) {
+			batch.flip();
+			batches.put(batch);
+		}
+	}
+
+	private List<String> write(File directory, BlockingQueue<ByteBuffer> batches)
+			throws IOException, InterruptedException {
+		// writes batches into shards of shardPositions each, giving each shard's name and size
+
+		List<String> shards = new ArrayList<>();
+		DataOutputStream out = null;
+		String name = null;
+		long inShard = 0, written = 0;
+		long start = System.currentTimeMillis(), lastReport = start;
+
+		try {
+			for (ByteBuffer batch = batches.take(); batch != END; batch = batches.take()) {
+				while (batch.hasRemaining()) {
+
+					// start a new shard when the last one is full
+					if (out == null) {
+						name = String.format("shard-%05d.bin", shards.size());
+						out = new DataOutputStream(new BufferedOutputStream(
+								new FileOutputStream(new File(directory, name)), 1 << 16));
+						out.writeInt(SHARD_MAGIC);
+						inShard = 0;
+					}
+
+					int count = (int) Math.min(batch.remaining() / RECORD_BYTES, shardPositions - inShard);
+					out.write(batch.array(), batch.position(), count * RECORD_BYTES);
+					batch.position(batch.position() + count * RECORD_BYTES);
+					inShard += count;
+					written += count;
+
+					if (inShard == shardPositions) {
+						out.close();
+						out = null;
+						shards.add(name + " " + inShard);
+					}
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - lastReport >= REPORT_INTERVAL) {
+					lastReport = now;
+					report(written, shards.size() + (out != null ? 1 : 0), now - start);
+				}
+			}
+		} finally {
+			if (out != null) {
+				out.close();
+				shards.add(name + " " + inShard);
+			}
+		}
+
+		report(written, shards.size(), System.currentTimeMillis() - start);
+		return shards;
+	}
+
+	private void report(long positions, int shards, long millis) {
+		System.err.printf("%d positions from %d games in %d shards in %.1f s, %.0f positions per second%n",
+				positions, games.get(), shards, millis / 1000.0, positions * 1000.0 / Math.max(1, millis));
+	}
+
+	public static List<long[]> readShard(String file) throws IOException {
+		// gives the positions of a shard as { player one's pieces, player two's, label, flags }
+
+		List<long[]> positions = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != SHARD_MAGIC)
+				throw new IOException(file + " is not a shard of positions");
+
+			while (true) {
+				long one;
+				try {
+					one = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				positions.add(new long[] { one, in.readLong(), in.readByte(), in.readByte() });
+			}
+		}
+		return positions;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java DataGenerator <directory> <positions> [player] [threads]"
+					+ " [solve empties] [shard positions] [seed]");
+			return;
+		}
+
+		long positions = Long.parseLong(args[1]);
+		String player = args.length > 2 ? args[2] : DEFAULT_PLAYER;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int solveEmpties = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SOLVE_EMPTIES;
+		int shardPositions = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_SHARD_POSITIONS;
+		long seed = args.length > 6 ? Long.parseLong(args[6]) : 0;
+
+		DataGenerator generator = new DataGenerator(player, threads, solveEmpties, shardPositions, seed);
+		List<String> shards = generator.generate(new File(args[0]), positions);
+
+		System.out.println("Wrote " + shards.size() + " shards to " + args[0] + ":");
+		for (String shard : shards)
+			System.out.println("  " + shard);
+	}
+
+}
@@ -0,0 +1,401 @@
+/*
+ * This class plays the end of the game perfectly by searching every move
+ * to the last square. It can find the exact final disc difference, or
+ * only whether the game is won, lost or drawn, which is much faster.
+ *
+ * The empty squares are kept in a linked list that moves unlink from and
+ * link back into, so the search never scans the whole field for them.
+ * With many empties, moves that leave the opponent the fewest replies
+ * are tried first, and only the first move is searched with the whole
+ * window, the rest just have to be shown to be no better. Near the end,
+ * moves in regions (quarters of the field) with an odd number of empties
+ * are tried first, since getting the last move in a region is usually
+ * worth having.
+ */
+
+public class EndgameSolver {
+
+	// the number of empties from which moves are sorted by the opponent's replies
+	private static final int SORT_EMPTIES = 7;
+
+	// the number of empties from which results are kept in the table
+	private static final int TABLE_EMPTIES = 9;
+
+	// the linked list of empty squares, with the head at index 64
+	private static final int HEAD = Bitboard.SQUARES;
+	private final int[] next = new int[Bitboard.SQUARES + 1];
+	private final int[] previous = new int[Bitboard.SQUARES + 1];
+
+	// the four corners
+	private static final long CORNERS = 0x8100000000000081L;
+
+	// the region (quarter of the field) of each square
+	private static final int[] REGION = new int[Bitboard.SQUARES];
+
+	// the squares around each square
+	private static final long[] NEIGHBORS = new long[Bitboard.SQUARES];
+
+	static {
+		for (int i = 0; i < Bitboard.SQUARES; i++) {
+			REGION[i] = (Bitboard.x(i) >= 4 ? 1 : 0) + (Bitboard.y(i) >= 4 ? 2 : 0);
+
+			for (int x = Bitboard.x(i) - 1; x <= Bitboard.x(i) + 1; x++)
+				for (int y = Bitboard.y(i) - 1; y <= Bitboard.y(i) + 1; y++)
+					if (x >= 0 && y >= 0 && x < Bitboard.SIZE && y < Bitboard.SIZE && Bitboard.index(x, y) != i)
+						NEIGHBORS[i] |= Bitboard.square(x, y);
+		}
+	}
+
+	// one bit per region, set while the region has an odd number of empties
+	private int parity;
+
+	// the sorted moves at each ply, kept here so nothing is allocated while solving
+	private final int[][] moveLists = new int[Bitboard.SQUARES][Bitboard.SQUARES];
+	private final int[][] moveKeys = new int[Bitboard.SQUARES][Bitboard.SQUARES];
+
+	// remembers solved positions, separate from the search's since the scores mean something else
+	private TranspositionTable table;
+
+	// the most empties the solver is used for, and how long it may take
+	private int maxEmpties;
+	private long timeLimit;
+	private long deadline;
+
+	// set from another thread to stop the solve early
+	private volatile boolean aborted;
+
+	// results of the last solve
+	private long nodes;
+	private int score;
+	private boolean stopped;
+
+	public EndgameSolver(TranspositionTable table, int maxEmpties, long timeLimit) {
+		this.table = table;
+		this.maxEmpties = maxEmpties;
+		this.timeLimit = timeLimit;
+	}
+
+	public boolean canSolve(long own, long opp) {
+		// checks if the position is close enough to the end to solve
+		return Bitboard.SQUARES - Bitboard.count(own | opp) <= maxEmpties;
+	}
+
+	public int solve(long own, long opp, int player, boolean exact) {
+		// gives the best square for the player owning own, or -1 if there are no moves
+		// or the time ran out, with exact or only win/loss/draw scores
+
+		table.newSearch();
+		nodes = 0;
+		score = 0;
+		stopped = aborted;
+		deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+
+		long moves = Bitboard.legalMoves(own, opp);
+		if (moves == 0)
+			return -1;
+
+		// set up the list of empties and the parity of each region
+		long empty = ~(own | opp);
+		int last = HEAD;
+		parity = 0;
+		for (long b = empty; b != 0; b &= b - 1) {
+			int square = Long.numberOfTrailingZeros(b);
+			next[last] = square;
+			previous[square] = last;
+			last = square;
+			parity ^= 1 << REGION[square];
+		}
+		next[last] = HEAD;
+		previous[HEAD] = last;
+
+		int empties = Bitboard.count(empty);
+		long hash = player == Field.PLAYER_ONE ? Zobrist.hash(own, opp, player)
+				: Zobrist.hash(opp, own, player);
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		// a win/loss/draw solve only needs to tell scores above and below zero apart
+		int alpha = exact ? -Bitboard.SQUARES - 1 : -1;
+		int beta = exact ? Bitboard.SQUARES + 1 : 1;
+
+		int count = sortMoves(own, opp, moves, 0, TranspositionTable.NO_MOVE);
+		int bestMove = moveLists[0][0];
+		int best = -Bitboard.SQUARES - 1;
+
+		for (int i = 0; i < count && alpha < beta; i++) {
+			int move = moveLists[0][i];
+			long flips = Bitboard.flips(own, opp, move);
+
+			unlink(move);
+			int value = searchMove(own, opp, flips, move, hash, player, other, empties, 0, alpha, beta, i == 0);
+			link(move);
+
+			if (stopped)
+				return -1;
+
+			if (value > best) {
+				best = value;
+				bestMove = move;
+				if (value > alpha)
+					alpha = value;
+			}
+		}
+
+		score = best;
+		return bestMove;
+	}
+
+	private int solve(long own, long opp, long hash, int player, int empties, int ply,
+			int alpha, int beta, boolean passed) {
+
+		nodes++;
+		if (aborted || ((nodes & 4095) == 0 && System.currentTimeMillis() >= deadline))
+			stopped = true;
+		if (stopped)
+			return 0;
+
+		if (empties == 0)
+			return Bitboard.count(own) - Bitboard.count(opp);
+
+		// the last square can be scored straight away
+		if (empties == 1)
+			return solveLast(own, opp, next[HEAD]);
+
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		// with few empties, just walk the list, odd regions first
+		if (empties < SORT_EMPTIES)
+			return solveByParity(own, opp, hash, player, other, empties, ply, alpha, beta, passed);
+
+		long moves = Bitboard.legalMoves(own, opp);
+
+		if (moves == 0) {
+			if (passed)
+				return finalScore(own, opp, empties);
+			return -solve(opp, own, hash ^ Zobrist.SIDE, other, empties, ply, -beta, -alpha, true);
+		}
+
+		// use what is remembered about this position
+		int hashMove = TranspositionTable.NO_MOVE;
+		if (empties >= TABLE_EMPTIES) {
+			long entry = table.probe(hash);
+			if (entry != 0) {
+				hashMove = TranspositionTable.move(entry);
+				int value = TranspositionTable.score(entry);
+				int bound = TranspositionTable.bound(entry);
+
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && value >= beta)
+						|| (bound == TranspositionTable.UPPER && value <= alpha))
+					return value;
+			}
+		}
+
+		int originalAlpha = alpha;
+		int best = -Bitboard.SQUARES - 1;
+		int bestMove = TranspositionTable.NO_MOVE;
+
+		// try the moves that leave the opponent the fewest replies first
+		int count = sortMoves(own, opp, moves, ply, hashMove);
+
+		for (int i = 0; i < count; i++) {
+			int move = moveLists[ply][i];
+			long flips = Bitboard.flips(own, opp, move);
+
+			unlink(move);
+			int value = searchMove(own, opp, flips, move, hash, player, other, empties, ply, alpha, beta, i == 0);
+			link(move);
+
+			if (value > best) {
+				best = value;
+				bestMove = move;
+				if (value > alpha) {
+					alpha = value;
+					if (alpha >= beta)
+						break;
+				}
+			}
+		}
+
+		if (empties >= TABLE_EMPTIES && !stopped) {
+			int bound = best <= originalAlpha ? TranspositionTable.UPPER
+					: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(hash, empties, bound, best, bestMove);
+		}
+
+		return best;
+	}
+
+	private int searchMove(long own, long opp, long flips, int move, long hash, int player, int other,
+			int empties, int ply, int alpha, int beta, boolean first) {
+		// searches one move, the first with the whole window and the rest only to check
+		// they are no better, searching again with the whole window if one is
+
+		long nextOwn = opp & ~flips;
+		long nextOpp = own | flips | (1L << move);
+		long nextHash = hash ^ Zobrist.move(player, move, flips);
+
+		if (first || beta - alpha == 1)
+			return -solve(nextOwn, nextOpp, nextHash, other, empties - 1, ply + 1, -beta, -alpha, false);
+
+		int value = -solve(nextOwn, nextOpp, nextHash, other, empties - 1, ply + 1, -alpha - 1, -alpha, false);
+		if (value > alpha && value < beta)
+			value = -solve(nextOwn, nextOpp, nextHash, other, empties - 1, ply + 1, -beta, -value, false);
+		return value;
+	}
+
+	private int solveByParity(long own, long opp, long hash, int player, int other,
+			int empties, int ply, int alpha, int beta, boolean passed) {
+		// tries the empty squares straight from the list, odd regions first then even
+
+		int best = -Bitboard.SQUARES - 1;
+		boolean moved = false;
+
+		for (int pass = 0; pass < 2; pass++) {
+			for (int square = next[HEAD]; square != HEAD; square = next[square]) {
+
+				// odd regions on the first pass, even ones on the second
+				boolean odd = (parity & (1 << REGION[square])) != 0;
+				if (odd != (pass == 0))
+					continue;
+
+				// a move has to be next to one of the opponent's pieces
+				if ((NEIGHBORS[square] & opp) == 0)
+					continue;
+
+				long flips = Bitboard.flips(own, opp, square);
+				if (flips == 0)
+					continue;
+				moved = true;
+
+				unlink(square);
+				int value = -solve(opp & ~flips, own | flips | (1L << square),
+						hash ^ Zobrist.move(player, square, flips), other, empties - 1, ply + 1,
+						-beta, -alpha, false);
+				link(square);
+
+				if (value > best) {
+					best = value;
+					if (value > alpha) {
+						alpha = value;
+						if (alpha >= beta)
+							return best;
+					}
+				}
+			}
+		}
+
+		if (!moved) {
+			if (passed)
+				return finalScore(own, opp, empties);
+			return -solve(opp, own, hash ^ Zobrist.SIDE, other, empties, ply, -beta, -alpha, true);
+		}
+
+		return best;
+	}
+
+	private int solveLast(long own, long opp, int square) {
+		// scores the position with one empty square left, without making the move
+
+		int diff = Bitboard.count(own) - Bitboard.count(opp);
+		nodes++;
+
+		// the player to move takes the square if they can
+		int flipped = Bitboard.count(Bitboard.flips(own, opp, square));
+		if (flipped > 0)
+			return diff + 2 * flipped + 1;
+
+		// otherwise the opponent takes it if they can
+		flipped = Bitboard.count(Bitboard.flips(opp, own, square));
+		if (flipped > 0)
+			return diff - 2 * flipped - 1;
+
+		// otherwise the square goes to the winner
+		return diff > 0 ? diff + 1 : diff < 0 ? diff - 1 : 0;
+	}
+
+	private int sortMoves(long own, long opp, long moves, int ply, int hashMove) {
+		// puts the moves in order into the list for this ply and gives how many there are
+
+		int[] list = moveLists[ply];
+		int[] keys = moveKeys[ply];
+		int count = 0;
+
+		for (; moves != 0; moves &= moves - 1) {
+			int move = Long.numberOfTrailingZeros(moves);
+			long flips = Bitboard.flips(own, opp, move);
+
+			// fewer replies for the opponent is better, corner replies count double,
+			// and odd regions break ties
+			long replies = Bitboard.legalMoves(opp & ~flips, own | flips | (1L << move));
+			int key = (Bitboard.count(replies) + Bitboard.count(replies & CORNERS)) * 2;
+			if ((parity & (1 << REGION[move])) == 0)
+				key++;
+			if (move == hashMove)
+				key = -1;
+
+			// insertion sort, there are only a few moves
+			int i = count++;
+			while (i > 0 && keys[i - 1] > key) {
+				list[i] = list[i - 1];
+				keys[i] = keys[i - 1];
+				i--;
+			}
+			list[i] = move;
+			keys[i] = key;
+		}
+
+		return count;
+	}
+
+	private void unlink(int square) {
+		// takes a square out of the list of empties
+		next[previous[square]] = next[square];
+		previous[next[square]] = previous[square];
+		parity ^= 1 << REGION[square];
+	}
+
+	private void link(int square) {
+		// puts a square back where it was, undoing unlink
+		next[previous[square]] = square;
+		previous[next[square]] = square;
+		parity ^= 1 << REGION[square];
+	}
+
+	private static int finalScore(long own, long opp, int empties) {
+		// the empty squares go to the winner
+		int diff = Bitboard.count(own) - Bitboard.count(opp);
+		if (diff > 0)
+			return diff + empties;
+		else if (diff < 0)
+			return diff - empties;
+		return 0;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public int getScore() {
+		// the final disc difference for the player to move, or only its sign after a win/loss/draw solve
+		return score;
+	}
+
+	public void setMaxEmpties(int maxEmpties) {
+		this.maxEmpties = maxEmpties;
+	}
+
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public void abort() {
+		// stops a running solve from another thread, the solve then gives -1
+		aborted = true;
+	}
+
+	public void resume() {
+		// lets solves run again after abort
+		aborted = false;
+	}
+
+}
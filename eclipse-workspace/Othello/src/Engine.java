@@ -0,0 +1,326 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.JMException;
+
+/*
+ * This class is the expert computer. It plays from the opening book
+ * while it can, solves the rest of the game once few enough squares are
+ * left, and otherwise searches on every core. How long it may think is
+ * given with every move, so the same engine serves the game on the
+ * console, which thinks for a fixed time, and the engine protocol, which
+ * thinks for as long as its clock allows.
+ *
+ * While the opponent thinks, the engine can ponder: it guesses the reply
+ * from the table and searches the position after it in the background.
+ * If the guess was right, the search carries on as the real one and is
+ * often done already, and if it was wrong, it is stopped, but whatever
+ * it put in the table is still there to be used.
+ *
+ * Running with -Dothello.cache=<file> keeps the deep results of the
+ * search in an AnalysisCache, so the engine starts where earlier runs
+ * left off.
+ */
+
+public class Engine {
+
+	// limits for the search
+	private static final int DEPTH = 60;
+	private static final int HASH_MB = 64;
+
+	// the search runs on every core
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	// the opening book and trained evaluation weights, used if they exist
+	private static final String BOOK_FILE = "othello.book";
+	private static final String WEIGHTS_FILE = "othello.weights";
+
+	// from how many empty squares the rest of the game is solved,
+	// first only for a win, then for the best score
+	private static final int ENDGAME_EMPTIES = 20;
+	private static final int EXACT_EMPTIES = 16;
+	private static final int ENDGAME_HASH_MB = 32;
+
+	// searches when neither the book nor the solver can answer, and the table it shares
+	private TranspositionTable table;
+	private ParallelSearch search;
+
+	// answers the opening moves, null if there is no book
+	private OpeningBook book;
+
+	// deep results kept between runs, null without a cache file
+	private AnalysisCache cache;
+
+	// plays the end of the game perfectly, with its own table
+	private TranspositionTable solverTable;
+	private EndgameSolver solver;
+
+	// tells how the last move was found, for people and for the metrics
+	private String report = "";
+	private String source = "";
+
+	// runs the ponder search, and the one running now with the position it is for
+	private ExecutorService ponderer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ponder");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Future<Integer> pondering;
+	private long ponderHash;
+	private long ponderStart;
+	private boolean ponderSolving;
+
+	// set by stop until the next resume, so stopping the ponder search never clears a stop from outside
+	private volatile boolean stopped;
+
+	public Engine() {
+		// the tables take a lot of memory, so an engine should only be made once it is needed
+		loadWeights();
+		table = new TranspositionTable(HASH_MB);
+		search = new ParallelSearch(table, THREADS, DEPTH, 0, 0);
+		String cacheFile = System.getProperty("othello.cache");
+		if (cacheFile != null) {
+			cache = AnalysisCache.open(cacheFile);
+			search.setCache(cache);
+		}
+		book = loadBook();
+		solverTable = new TranspositionTable(ENDGAME_HASH_MB);
+		solver = new EndgameSolver(solverTable, ENDGAME_EMPTIES, 0);
+
+		// shown over JMX even while off, so they can be turned on there
+		try {
+			EngineMetrics.register();
+		} catch (JMException e) {
+			System.err.println("Could not show the metrics over JMX: " + e.getMessage());
+		}
+	}
+
+	public int chooseMove(long own, long opp, long hash, int player, long searchTime, long solveTime) {
+		// gives the best square for the player owning own, or -1 if there are no moves,
+		// searching for about searchTime and solving for at most solveTime milliseconds
+
+		long start = System.currentTimeMillis();
+		int move = -1;
+
+		// use the ponder search if it was for this position
+		if (pondering != null)
+			move = finishPondering(hash, searchTime, solveTime);
+
+		if (move == -1)
+			move = think(own, opp, hash, player, searchTime, solveTime);
+
+		if (move != -1 && EngineMetrics.isEnabled())
+			EngineMetrics.record(moveEvent(move, System.currentTimeMillis() - start));
+		return move;
+	}
+
+	private MoveEvent moveEvent(int move, long millis) {
+		// describes the move just found, from whichever part of the engine found it
+
+		if (source.equals("book"))
+			return new MoveEvent(source, move, millis, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+		if (source.endsWith("solver"))
+			return new MoveEvent(source, move, millis, 0, solver.getNodes(), 0, 0, 0, -1, 0, 0, 0);
+
+		return new MoveEvent(source, move, millis, search.getDepth(), search.getNodes(), search.getProbes(),
+				search.getHits(), search.getBranchingFactor(), search.getFirstMoveTime(),
+				search.getMoveGenerations(), search.getFlips(), search.getEvaluations());
+	}
+
+	private int think(long own, long opp, long hash, int player, long searchTime, long solveTime) {
+		// finds a move from the book, the solver or the search, a time of 0 means no limit
+
+		// play from the book if the position is in it
+		int move = book == null ? -1 : book.lookup(own, opp);
+
+		if (move != -1) {
+			report = "The computer played from its opening book.";
+			source = "book";
+			return move;
+		}
+
+		if (solver.canSolve(own, opp)) {
+
+			// close to the end, solve the rest of the game
+			boolean exact = Bitboard.SQUARES - Bitboard.count(own | opp) <= EXACT_EMPTIES;
+			solver.setTimeLimit(solveTime);
+			move = solver.solve(own, opp, player, exact);
+
+			if (move != -1) {
+				report = "The computer solved the rest of the game in " + solver.getNodes() + " positions.";
+				source = "solver";
+				return move;
+			}
+		}
+
+		// otherwise search ahead for the best move
+		search.setTimeLimit(searchTime);
+		move = search.findMove(own, opp, hash, player);
+		report = "The computer searched " + search.getNodes() + " positions to depth " + search.getDepth() + ".";
+		source = "search";
+		return move;
+	}
+
+	public void ponder(long own, long opp, long hash, int player) {
+		// starts thinking about the engine's next move while the player owning own,
+		// who is to move, thinks about theirs
+
+		stopPondering();
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+		long moves = Bitboard.legalMoves(own, opp);
+
+		if (moves == 0) {
+
+			// the opponent has to pass, unless the game is over
+			if (Bitboard.legalMoves(opp, own) == 0)
+				return;
+			startPondering(opp, own, hash ^ Zobrist.SIDE, other);
+			return;
+		}
+
+		// guess the reply the last search or solve expected, there is nothing to go on without one
+		long entry = table.probe(hash);
+		if (entry == 0)
+			entry = solverTable.probe(hash);
+		int reply = TranspositionTable.move(entry);
+		if (entry == 0 || reply >= Bitboard.SQUARES || (moves & (1L << reply)) == 0)
+			return;
+
+		long flips = Bitboard.flips(own, opp, reply);
+		startPondering(opp & ~flips, own | flips | (1L << reply), hash ^ Zobrist.move(player, reply, flips), other);
+	}
+
+	private void startPondering(long own, long opp, long hash, int player) {
+		ponderHash = hash;
+		ponderStart = System.currentTimeMillis();
+		ponderSolving = solver.canSolve(own, opp);
+		pondering = ponderer.submit(() -> think(own, opp, hash, player, 0, 0));
+	}
+
+	private int finishPondering(long hash, long searchTime, long solveTime) {
+		// gives the ponder search's move if it was for this position, or -1 if it wasn't
+		// or couldn't finish, counting the time it already had towards the time for the move
+
+		Future<Integer> ponder = pondering;
+		pondering = null;
+
+		try {
+			if (hash != ponderHash) {
+				abortSearches();
+				ponder.get();
+				return -1;
+			}
+
+			long wait = ponderStart + (ponderSolving ? solveTime : searchTime) - System.currentTimeMillis();
+			try {
+				int move = ponder.get(Math.max(0, wait), TimeUnit.MILLISECONDS);
+				report += " It was found while the opponent was thinking.";
+				source = "ponder " + source;
+				return move;
+			} catch (TimeoutException e) {
+
+				// the search has had its time, so stop it and take its best move so far,
+				// but a solve that didn't finish has nothing to give
+				abortSearches();
+				int move = ponder.get();
+				if (ponderSolving)
+					return -1;
+				report += " It was found while the opponent was thinking.";
+				source = "ponder " + source;
+				return move;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return -1;
+		} finally {
+			// only undo the engine's own stop of the ponder search, a stop from outside has to last
+			// until the move is made, so it is checked after resuming in case it came in between
+			solver.resume();
+			search.resume();
+			if (stopped)
+				abortSearches();
+		}
+	}
+
+	public void stopPondering() {
+		// stops the ponder search without using it, such as when the position is set up again
+		if (pondering != null)
+			finishPondering(~ponderHash, 0, 0);
+	}
+
+	public boolean isPondering() {
+		return pondering != null;
+	}
+
+	public String getReport() {
+		return report;
+	}
+
+	public void stop() {
+		// makes a running chooseMove give its best move so far, from another thread
+		stopped = true;
+		abortSearches();
+	}
+
+	private void abortSearches() {
+		solver.abort();
+		search.abort();
+	}
+
+	public void resume() {
+		// lets chooseMove think again after stop, called before the next move is asked for
+		stopped = false;
+		solver.resume();
+		search.resume();
+	}
+
+	public void shutdown() {
+		stopPondering();
+		ponderer.shutdownNow();
+		search.shutdown();
+
+		// the cache writes out what it was still holding
+		if (cache != null) {
+			try {
+				cache.close();
+			} catch (IOException e) {
+				System.err.println("Could not save the analysis cache: " + e.getMessage());
+			}
+		}
+	}
+
+	private static OpeningBook loadBook() {
+		// opens the opening book if there is one
+		if (!new File(BOOK_FILE).exists())
+			return null;
+
+		try {
+			return new OpeningBook(BOOK_FILE);
+		} catch (IOException e) {
+			System.err.println("Could not open the opening book: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void loadWeights() {
+		// replaces the evaluation's starting weights with trained ones if there are any
+		if (!new File(WEIGHTS_FILE).exists())
+			return;
+
+		try {
+			PatternEvaluator.loadWeights(WEIGHTS_FILE);
+		} catch (IOException e) {
+			System.err.println("Could not load the evaluation weights: " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * This class adds up what the expert computer's moves cost, and tells
+ * listeners about every move as a MoveEvent. It is off until enabled,
+ * and even when on it costs almost nothing: the searches count their
+ * work in their own fields as they go, and only once a move is made are
+ * the counts added here and an event made.
+ *
+ * The totals can be read with snapshot, or over JMX under the name
+ * Othello:type=EngineMetrics once register has been called, which every
+ * engine does, so the metrics can be turned on over JMX at any time.
+ * Running with -Dothello.metrics=true turns them on from the start.
+ */
+
+public final class EngineMetrics {
+
+	// the JMX name the totals are shown under
+	public static final String OBJECT_NAME = "Othello:type=EngineMetrics";
+
+	private static volatile boolean enabled = Boolean.getBoolean("othello.metrics");
+
+	// the totals over every move since the metrics were enabled
+	private static final LongAdder moves = new LongAdder();
+	private static final LongAdder millis = new LongAdder();
+	private static final LongAdder nodes = new LongAdder();
+	private static final LongAdder moveGenerations = new LongAdder();
+	private static final LongAdder flips = new LongAdder();
+	private static final LongAdder evaluations = new LongAdder();
+	private static final LongAdder probes = new LongAdder();
+	private static final LongAdder hits = new LongAdder();
+
+	private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	// told about every move while the metrics are enabled
+	public interface Listener {
+		void moveMade(MoveEvent event);
+	}
+
+	private EngineMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		EngineMetrics.enabled = enabled;
+	}
+
+	public static void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	static void record(MoveEvent event) {
+		// adds a move to the totals and passes it on, the engine only calls this while enabled
+
+		moves.increment();
+		millis.add(event.getMillis());
+		nodes.add(event.getNodes());
+		moveGenerations.add(event.getMoveGenerations());
+		flips.add(event.getFlips());
+		evaluations.add(event.getEvaluations());
+		probes.add(event.getProbes());
+		hits.add(event.getHits());
+
+		for (Listener listener : listeners)
+			listener.moveMade(event);
+	}
+
+	public static void reset() {
+		moves.reset();
+		millis.reset();
+		nodes.reset();
+		moveGenerations.reset();
+		flips.reset();
+		evaluations.reset();
+		probes.reset();
+		hits.reset();
+	}
+
+	public static Snapshot snapshot() {
+		return new Snapshot();
+	}
+
+	public static synchronized void register() throws JMException {
+		// shows the totals over JMX, once per JVM however often it is called,
+		// enabled only decides whether moves are recorded
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+	}
+
+	// the totals at one moment, which don't change once taken
+	public static class Snapshot {
+
+		private final long moves = EngineMetrics.moves.sum();
+		private final long millis = EngineMetrics.millis.sum();
+		private final long nodes = EngineMetrics.nodes.sum();
+		private final long moveGenerations = EngineMetrics.moveGenerations.sum();
+		private final long flips = EngineMetrics.flips.sum();
+		private final long evaluations = EngineMetrics.evaluations.sum();
+		private final long probes = EngineMetrics.probes.sum();
+		private final long hits = EngineMetrics.hits.sum();
+
+		public long getMoves() {
+			return moves;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public long getNodes() {
+			return nodes;
+		}
+
+		public long getNodesPerSecond() {
+			return nodes * 1000 / Math.max(1, millis);
+		}
+
+		public long getMoveGenerations() {
+			return moveGenerations;
+		}
+
+		public long getFlips() {
+			return flips;
+		}
+
+		public long getEvaluations() {
+			return evaluations;
+		}
+
+		public double getHashHitRate() {
+			return probes > 0 ? (double) hits / probes : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("moves=%d time=%dms nodes=%d nps=%d movegen=%d flips=%d evals=%d hash=%.1f%%",
+					moves, millis, nodes, getNodesPerSecond(), moveGenerations, flips, evaluations,
+					getHashHitRate() * 100);
+		}
+
+	}
+
+	private static class Bean implements EngineMetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return EngineMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			EngineMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public long getMoves() {
+			return snapshot().getMoves();
+		}
+
+		@Override
+		public long getMillis() {
+			return snapshot().getMillis();
+		}
+
+		@Override
+		public long getNodes() {
+			return snapshot().getNodes();
+		}
+
+		@Override
+		public long getMoveGenerations() {
+			return snapshot().getMoveGenerations();
+		}
+
+		@Override
+		public long getFlips() {
+			return snapshot().getFlips();
+		}
+
+		@Override
+		public long getEvaluations() {
+			return snapshot().getEvaluations();
+		}
+
+		@Override
+		public double getHashHitRate() {
+			return snapshot().getHashHitRate();
+		}
+
+	}
+
+}
@@ -0,0 +1,26 @@
+/*
+ * This interface is what EngineMetrics shows over JMX, so the totals can
+ * be watched from JConsole or Mission Control while the engine runs.
+ */
+
+public interface EngineMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getMoves();
+
+	long getMillis();
+
+	long getNodes();
+
+	long getMoveGenerations();
+
+	long getFlips();
+
+	long getEvaluations();
+
+	double getHashHitRate();
+
+}
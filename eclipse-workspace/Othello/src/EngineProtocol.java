@@ -0,0 +1,363 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This class lets other programs, such as a GUI or an arbiter, play the
+ * expert computer through a text protocol on standard input and output,
+ * in the style of GTP. Every command may start with a number, and is
+ * answered with "=" (or "?" for an error), the same number, the answer,
+ * and an empty line.
+ *
+ * Usage: java EngineProtocol [seconds per move]
+ *
+ *   protocol_version, name, version, known_command <name>, list_commands
+ *   boardsize 8, clear_board   starts over from the starting position
+ *   setboard <64 squares> <x|o>  sets up a position, squares a1 to h8 as
+ *                              x (black), o (white) or -, then who moves
+ *   play <color> <square|pass> plays a move, such as play b f5
+ *   undo                       takes back the last move
+ *   genmove <color>            finds a move, plays it and answers it
+ *   stop                       makes a running genmove answer right away
+ *   ponder <on|off>            thinks on the opponent's time after genmove
+ *   time_settings <main> <increment>  sets both clocks, in seconds
+ *   time_left <color> <seconds>       corrects a clock
+ *   metrics                    answers the engine's totals, see EngineMetrics
+ *   showboard, final_score, quit
+ *
+ * The color is black (or b, x) or white (or w, o). genmove searches on
+ * its own thread, so stop can be read while it thinks, and every other
+ * command waits for it to finish first.
+ */
+
+public class EngineProtocol {
+
+	// how long each move is thought about while there is no clock
+	private static final long DEFAULT_MOVE_TIME = 1500;
+
+	private static final List<String> COMMANDS = Arrays.asList("protocol_version", "name", "version",
+			"known_command", "list_commands", "quit", "boardsize", "clear_board", "setboard", "play", "undo",
+			"genmove", "stop", "ponder", "time_settings", "time_left", "metrics", "showboard", "final_score");
+
+	private PrintStream out;
+
+	// the game, and the moves played with the flips needed to take them back
+	private Field field = new Field();
+	private Deque<long[]> history = new ArrayDeque<>();
+
+	// each player's clock, indexed by PLAYER_ONE and PLAYER_TWO
+	private TimeManager[] clocks = new TimeManager[3];
+
+	// made by the first genmove, since its tables take a lot of memory
+	private Engine engine;
+
+	// runs genmove so that stop can still be read, and the genmove running now
+	private ExecutorService thinker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "genmove");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Future<?> thinking;
+
+	// whether genmove's chooseMove is running, since stop must not reach the ponder search after it
+	private boolean choosing;
+
+	// whether to think about the next move after answering genmove
+	private boolean ponder;
+
+	public EngineProtocol(PrintStream out, long moveTime) {
+		this.out = out;
+		clocks[Field.PLAYER_ONE] = new TimeManager(moveTime);
+		clocks[Field.PLAYER_TWO] = new TimeManager(moveTime);
+	}
+
+	public void run(BufferedReader in) throws IOException {
+		// answers commands until quit or the end of the input
+
+		String line;
+		while ((line = in.readLine()) != null) {
+
+			// leave out comments and empty lines
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+
+			String[] words = line.split("\\s+");
+			String id = "";
+			if (words[0].matches("\\d+")) {
+				id = words[0];
+				words = Arrays.copyOfRange(words, 1, words.length);
+				if (words.length == 0)
+					continue;
+			}
+			String command = words[0].toLowerCase();
+
+			// stop is answered while genmove is still thinking, anything else waits for it
+			if (command.equals("stop")) {
+				synchronized (this) {
+					if (choosing)
+						engine.stop();
+				}
+				answer(id, true, "");
+				continue;
+			}
+			finishThinking();
+
+			if (command.equals("quit")) {
+				answer(id, true, "");
+				break;
+			}
+
+			try {
+				if (command.equals("genmove"))
+					startThinking(id, player(words, 1));
+				else
+					answer(id, true, handle(command, words));
+			} catch (IllegalArgumentException e) {
+				answer(id, false, e.getMessage());
+			}
+		}
+
+		finishThinking();
+		if (engine != null)
+			engine.shutdown();
+	}
+
+	private String handle(String command, String[] words) {
+		// carries out any command but genmove, stop and quit, giving the answer
+
+		switch (command) {
+		case "protocol_version":
+			return "2";
+		case "name":
+			return "Othello";
+		case "version":
+			return "1.0";
+		case "known_command":
+			return String.valueOf(COMMANDS.contains(word(words, 1).toLowerCase()));
+		case "list_commands":
+			return String.join("\n", COMMANDS);
+		case "boardsize":
+			if (!word(words, 1).equals(String.valueOf(Bitboard.SIZE)))
+				throw new IllegalArgumentException("unacceptable size");
+			return "";
+		case "clear_board":
+			stopPondering();
+			field.setPosition(Bitboard.START_ONE, Bitboard.START_TWO, Field.PLAYER_ONE);
+			history.clear();
+			return "";
+		case "setboard":
+			setBoard(word(words, 1), player(words, 2));
+			return "";
+		case "play":
+			play(player(words, 1), word(words, 2));
+			return "";
+		case "undo":
+			stopPondering();
+			if (history.isEmpty())
+				throw new IllegalArgumentException("cannot undo");
+			long[] last = history.pop();
+			field.unmakeMove((int) last[0], last[1]);
+			return "";
+		case "ponder":
+			String setting = word(words, 1).toLowerCase();
+			if (!setting.equals("on") && !setting.equals("off"))
+				throw new IllegalArgumentException("ponder is on or off");
+			ponder = setting.equals("on");
+			if (!ponder)
+				stopPondering();
+			return "";
+		case "time_settings":
+			long main = seconds(word(words, 1));
+			long increment = seconds(word(words, 2));
+			clocks[Field.PLAYER_ONE].setClock(main, increment);
+			clocks[Field.PLAYER_TWO].setClock(main, increment);
+			return "";
+		case "time_left":
+			clocks[player(words, 1)].setRemaining(seconds(word(words, 2)));
+			return "";
+		case "metrics":
+			return EngineMetrics.snapshot().toString();
+		case "showboard":
+			return showBoard();
+		case "final_score":
+			int diff = Bitboard.count(field.getPieces(Field.PLAYER_ONE))
+					- Bitboard.count(field.getPieces(Field.PLAYER_TWO));
+			return diff > 0 ? "B+" + diff : diff < 0 ? "W+" + -diff : "0";
+		default:
+			throw new IllegalArgumentException("unknown command");
+		}
+	}
+
+	private void setBoard(String squares, int player) {
+		long one = Bitboard.fromText(squares, Field.PLAYER_ONE);
+		long two = Bitboard.fromText(squares, Field.PLAYER_TWO);
+
+		stopPondering();
+		field.setPosition(one, two, player);
+		history.clear();
+	}
+
+	private void play(int player, String text) {
+		// plays a move, passing for the other player first if they have no moves
+
+		passIfNeeded(player);
+		long moves = field.getLegalMoves();
+		int square = text.equalsIgnoreCase("pass") ? Field.PASS : Bitboard.fromText(text);
+
+		if (square == Field.PASS ? moves != 0 : (moves & (1L << square)) == 0)
+			throw new IllegalArgumentException("illegal move");
+		makeMove(square);
+	}
+
+	private void passIfNeeded(int player) {
+		// a move for the player not to move is only allowed when the one to move has to pass
+		if (field.getCurrentUser() == player)
+			return;
+		if (field.getLegalMoves() != 0)
+			throw new IllegalArgumentException("it is not that color's turn");
+		makeMove(Field.PASS);
+	}
+
+	private void makeMove(int square) {
+		history.push(new long[] { square, field.makeMove(square) });
+	}
+
+	private void startThinking(String id, int player) {
+		// checks the command here so errors come back straight away, then thinks on the other thread
+
+		passIfNeeded(player);
+		long moves = field.getLegalMoves();
+		if (moves == 0) {
+			makeMove(Field.PASS);
+			answer(id, true, "pass");
+			return;
+		}
+
+		if (engine == null)
+			engine = new Engine();
+
+		// resume here and not on the other thread, so a stop sent right after is never lost
+		engine.resume();
+		choosing = true;
+
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+		long own = field.getPieces(player);
+		long opp = field.getPieces(other);
+		long hash = field.getHash();
+		TimeManager clock = clocks[player];
+		int empties = Bitboard.SQUARES - Bitboard.count(own | opp);
+
+		thinking = thinker.submit(() -> {
+			long start = System.currentTimeMillis();
+			int move;
+			try {
+				move = engine.chooseMove(own, opp, hash, player, clock.searchTime(empties),
+						clock.solveTime(empties));
+			} finally {
+				// a stop that came in as the move was found is over, so it can't cut the ponder search short
+				synchronized (this) {
+					choosing = false;
+					engine.resume();
+				}
+			}
+			clock.used(System.currentTimeMillis() - start);
+
+			makeMove(move);
+			System.err.println(engine.getReport());
+			answer(id, true, Bitboard.toText(move));
+
+			// think about the next move until the other player's move comes in
+			if (ponder)
+				engine.ponder(field.getPieces(other), field.getPieces(player), field.getHash(), other);
+		});
+	}
+
+	private void stopPondering() {
+		if (engine != null)
+			engine.stopPondering();
+	}
+
+	private void finishThinking() {
+		// waits for a running genmove to answer
+		if (thinking == null)
+			return;
+
+		try {
+			thinking.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+		}
+		thinking = null;
+	}
+
+	private String showBoard() {
+		StringBuilder text = new StringBuilder("  a b c d e f g h");
+		for (int y = 0; y < Bitboard.SIZE; y++) {
+			text.append('\n').append(y + 1);
+			for (int x = 0; x < Bitboard.SIZE; x++) {
+				long square = Bitboard.square(x, y);
+				text.append(' ').append((field.getPieces(Field.PLAYER_ONE) & square) != 0 ? 'X'
+						: (field.getPieces(Field.PLAYER_TWO) & square) != 0 ? 'O' : '.');
+			}
+		}
+		text.append('\n').append(field.getCurrentUser() == Field.PLAYER_ONE ? "Black" : "White").append(" to move");
+		return text.toString();
+	}
+
+	private synchronized void answer(String id, boolean success, String text) {
+		// both threads answer, so a whole answer is written at once
+		out.print((success ? "=" : "?") + id + (text.isEmpty() ? "" : " " + text) + "\n\n");
+		out.flush();
+	}
+
+	private static String word(String[] words, int index) {
+		if (index >= words.length)
+			throw new IllegalArgumentException("missing argument");
+		return words[index];
+	}
+
+	private static int player(String[] words, int index) {
+		// reads a color
+		switch (word(words, index).toLowerCase()) {
+		case "b": case "black": case "x":
+			return Field.PLAYER_ONE;
+		case "w": case "white": case "o":
+			return Field.PLAYER_TWO;
+		default:
+			throw new IllegalArgumentException("not a color: " + words[index]);
+		}
+	}
+
+	private static long seconds(String text) {
+		// reads a time in seconds, giving milliseconds
+		try {
+			return Math.round(Double.parseDouble(text) * 1000);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("not a time: " + text);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		long moveTime = args.length > 0 ? Math.round(Double.parseDouble(args[0]) * 1000) : DEFAULT_MOVE_TIME;
+
+		// with the metrics on, every move is logged next to the engine's report
+		EngineMetrics.addListener(event -> System.err.println(event));
+		new EngineProtocol(System.out, moveTime).run(new BufferedReader(new InputStreamReader(System.in)));
+	}
+
+}
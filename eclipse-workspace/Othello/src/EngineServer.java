@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * This class hosts many games at once over TCP on the loopback address,
+ * so one JVM can serve a whole matchmaking tier. Each connection is a
+ * session with its own field and its own thread, which spends most of
+ * its time waiting on the client. The computer's moves are worked out on
+ * one shared, fixed size pool of engine threads, so a slow client only
+ * ever holds up its own session and never a search.
+ *
+ * Usage: java EngineServer [port] [engine threads]
+ *
+ * The protocol is one command per line, and every command gets exactly
+ * one line back:
+ *
+ *   new [black|white] [easy|hard|expert|expert:<depth>|mcts|mcts:<playouts>|neural|neural:<depth>]
+ *                   starts a game with the client playing the given color
+ *                   (black moves first), answered with "ok" or, when the
+ *                   computer moves first, with its move as for play
+ *   play <square>   plays a move such as d3, or pass when there is none,
+ *                   answered with "move <square>" (or "move pass"), with
+ *                   "end <client pieces> <computer pieces>" on the end
+ *                   of the line once the game is over
+ *   board           answered with "board" and the 64 squares from a1 to
+ *                   h8 (x for black, o for white, - for empty)
+ *   stats           answered with the session's move latency percentiles
+ *   quit            answered with "bye", then the connection is closed
+ *
+ * Anything that can't be done is answered with "error" and the reason.
+ */
+
+public class EngineServer {
+
+	public static final int DEFAULT_PORT = 5858;
+
+	// session threads only read lines and wait, so they need little stack
+	private static final long SESSION_STACK = 256 * 1024;
+
+	// connections waiting to be accepted
+	private static final int BACKLOG = 1024;
+
+	// each engine thread keeps its own players, by name, and reuses them for every session
+	private static final ThreadLocal<Map<String, Player>> PLAYERS = ThreadLocal.withInitial(HashMap::new);
+
+	private int port;
+
+	// runs the sessions, one thread each, and the searches, on a bounded pool
+	private ExecutorService sessions;
+	private ExecutorService engines;
+
+	// every session's latencies together, reported when the server stops
+	private LatencyStats allLatencies = new LatencyStats();
+
+	public EngineServer(int port, int engineThreads) {
+		this.port = port;
+		sessions = Executors.newCachedThreadPool(threads("session", SESSION_STACK));
+		engines = Executors.newFixedThreadPool(engineThreads, threads("engine", 0));
+	}
+
+	private static ThreadFactory threads(String name, long stackSize) {
+		// numbers the threads and lets the JVM exit without waiting for them
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(null, runnable, name + "-" + count.incrementAndGet(), stackSize);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public void serve() throws IOException {
+		// accepts connections until the server is stopped, giving each its own session
+
+		try (ServerSocket server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+			System.out.println("Serving games on " + server.getLocalSocketAddress());
+
+			while (!Thread.currentThread().isInterrupted()) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				sessions.execute(() -> runSession(socket));
+			}
+		}
+	}
+
+	public void shutdown() {
+		// stops every session and search, and reports the latencies so far
+		sessions.shutdownNow();
+		engines.shutdownNow();
+
+		synchronized (allLatencies) {
+			System.out.println("Move latency over every session: " + allLatencies);
+		}
+	}
+
+	private void runSession(Socket socket) {
+		Session session = new Session();
+
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				String reply = session.handle(line.trim().toLowerCase());
+				out.println(reply);
+				out.flush();
+
+				if (reply.equals("bye"))
+					break;
+			}
+		} catch (IOException e) {
+			// the client went away, which ends the session like quit does
+		}
+
+		System.out.println("Session on " + socket.getRemoteSocketAddress() + " ended, move latency: "
+				+ session.latencies);
+		synchronized (allLatencies) {
+			allLatencies.merge(session.latencies);
+		}
+	}
+
+	private class Session {
+
+		// the game being played, null before the first new
+		private Field field;
+
+		// the client's color and the computer's player
+		private int client;
+		private String engine;
+
+		// how long each of the computer's answers took, from reading play to the reply
+		private LatencyStats latencies = new LatencyStats();
+
+		String handle(String command) {
+			String[] words = command.split("\\s+");
+
+			try {
+				switch (words[0]) {
+				case "new":
+					return newGame(words);
+				case "play":
+					if (words.length != 2)
+						return "error play needs a square";
+					return play(words[1]);
+				case "board":
+					return field == null ? "error no game" : "board " + board();
+				case "stats":
+					return "stats " + latencies;
+				case "quit":
+					return "bye";
+				default:
+					return "error unknown command " + words[0];
+				}
+			} catch (IllegalArgumentException e) {
+				return "error " + e.getMessage();
+			}
+		}
+
+		private String newGame(String[] words) {
+			String color = words.length > 1 ? words[1] : "black";
+			if (!color.equals("black") && !color.equals("white"))
+				return "error the color is black or white";
+
+			// make sure the player exists before the game starts
+			String name = words.length > 2 ? words[2] : "expert";
+			if (!Player.isValid(name))
+				return "error Unknown player: " + name;
+
+			field = new Field();
+			client = color.equals("black") ? Field.PLAYER_ONE : Field.PLAYER_TWO;
+			engine = name;
+
+			// the computer plays black's first move itself
+			if (client == Field.PLAYER_TWO)
+				return reply(System.nanoTime());
+			return "ok";
+		}
+
+		private String play(String text) {
+			long start = System.nanoTime();
+
+			if (field == null || field.isGameOver())
+				return "error no game";
+			if (field.getCurrentUser() != client)
+				return "error not your turn";
+
+			long moves = field.getLegalMoves();
+			int square = text.equals("pass") ? Field.PASS : Bitboard.fromText(text);
+
+			if (square == Field.PASS ? moves != 0 : (moves & (1L << square)) == 0)
+				return "error illegal move " + text;
+
+			field.makeMove(square);
+			return reply(start);
+		}
+
+		private String reply(long start) {
+			// lets the computer answer the client's move, timed from when it was read
+
+			if (field.isGameOver())
+				return end();
+
+			int square = Field.PASS;
+			if (field.getLegalMoves() != 0)
+				square = think();
+			field.makeMove(square);
+
+			latencies.add(System.nanoTime() - start);
+
+			String move = "move " + (square == Field.PASS ? "pass" : Bitboard.toText(square));
+			return field.isGameOver() ? move + " " + end() : move;
+		}
+
+		private int think() {
+			// runs the search on the engine pool, this thread only waits for it
+
+			int player = field.getCurrentUser();
+			int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			long own = field.getPieces(player);
+			long opp = field.getPieces(other);
+			String name = engine;
+
+			try {
+				return engines.submit(() -> PLAYERS.get().computeIfAbsent(name, Player::create)
+						.chooseMove(own, opp, player)).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalArgumentException("the server is stopping");
+			} catch (ExecutionException e) {
+				throw new IllegalArgumentException("the computer could not move: " + e.getCause());
+			}
+		}
+
+		private String end() {
+			int other = client == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			return "end " + Bitboard.count(field.getPieces(client)) + " "
+					+ Bitboard.count(field.getPieces(other));
+		}
+
+		private String board() {
+			return Bitboard.toText(field.getPieces(Field.PLAYER_ONE), field.getPieces(Field.PLAYER_TWO)) + " "
+					+ (field.getCurrentUser() == Field.PLAYER_ONE ? "x" : "o");
+		}
+
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int engineThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+
+		EngineServer server = new EngineServer(port, engineThreads);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
+		server.serve();
+	}
+
+}
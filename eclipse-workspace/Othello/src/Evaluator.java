@@ -0,0 +1,22 @@
+/*
+ * This interface judges positions at the leaves of the search. It is
+ * told about every move as it is made and taken back, so it can keep
+ * whatever it needs up to date instead of looking at the whole field for
+ * each evaluation.
+ */
+
+public interface Evaluator {
+
+	// starts from a position, only needed once per search
+	void setPosition(long one, long two);
+
+	// the player put a piece on square and flipped the pieces in flips
+	void play(int player, int square, long flips);
+
+	// takes back play with the same arguments
+	void undo(int player, int square, long flips);
+
+	// the value of the position for the given player
+	int evaluate(int player);
+
+}
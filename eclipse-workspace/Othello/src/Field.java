@@ -1,6 +1,8 @@
 import java.awt.Point;
 import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Author: Ethan Fisher
@@ -27,35 +29,118 @@ public class Field {
 	public static final int PLAYER_ONE = 1;
 	public static final int PLAYER_TWO = 2;
 	
+	// the square given to makeMove when the current user has to pass
+	public static final int PASS = -1;
+	
 	// difficulties for the computer
 	public static final int EASY = 0;
 	public static final int HARD = 1;
+	public static final int EXPERT = 2;
+	public static final int MCTS = 3;
+	public static final int NEURAL = 4;
+	
+	// how long the expert computer thinks, as long as the other difficulties
+	// wait before answering, and how long it may take to solve the end of the game
+	private static final long EXPERT_TIME = 1500;
+	private static final long ENDGAME_TIME = 10000;
+	
+	// the playouts the Monte Carlo computer runs for each move, and the positions its tree can hold
+	private static final int MCTS_PLAYOUTS = 200000;
+	private static final int MCTS_NODES = 1 << 20;
+	
+	// the table the neural computer's search uses
+	private static final int NEURAL_HASH_MB = 16;
 	
-	// controls each position on the field
-	private int[][] field;
+	// how long hints are worked out for, and the table they use
+	private static final long HINT_TIME = 1000;
+	private static final int HINT_HASH_MB = 16;
+	
+	// controls each position on the field, as one bitboard per player
+	// (indexed by PLAYER_ONE and PLAYER_TWO)
+	private long[] discs;
 	
 	// current user
 	private int currentUser;
+	
+	// hash of the pieces and current user, kept up to date as pieces change
+	private long hash;
+	
+	// the expert computer, only made once it is needed
+	private Engine engine;
+	
+	// the Monte Carlo computer, also only made once it is needed
+	private MonteCarloSearch monteCarlo;
+	
+	// the neural computer, a search judging positions with the network, also made once needed
+	private Search neural;
+	
+	// scores every legal point when the user asks for a hint, also made once needed
+	private Hints hints;
+	
+	// the hash of the last position hints were asked for, so the hints' table is aged once per position
+	private long hintedHash;
+	
+	// the width and height of the field
+	private int size;
+	
+	// the field when it isn't 8x8, which the bitboards and computers above don't cover
+	private VariantBoard variant;
+	
+	// the legal moves of a variant field, reused every turn
+	private int[] variantMoves;
 
 	public Field() {
 		
-		// initialize scanner
-		input = new Scanner(System.in);
+		// share the game's scanner, a new one on System.in would lose input the first one buffered
+		input = Othello.INPUT;
 		
-		// initialize array
-		field = new int[8][8];
-		
-		// make every spot empty
-		for (int i = 0; i < 8; i++)
-			for (int j = 0; j < 8; j++)
-				field[i][j] = EMPTY;
+		// initialize bitboards, every spot not in one of them is empty
+		discs = new long[3];
 		
 		// in othello, these are the players' starting positions
-		field[3][3] = field[4][4] = PLAYER_ONE;
-		field[3][4] = field[4][3] = PLAYER_TWO;
+		discs[PLAYER_ONE] = Bitboard.START_ONE;
+		discs[PLAYER_TWO] = Bitboard.START_TWO;
 		
 		// initialize current user
 		currentUser = PLAYER_ONE;
+		
+		// hash the starting position
+		hash = Zobrist.hash(discs[PLAYER_ONE], discs[PLAYER_TWO], currentUser);
+		
+		size = Bitboard.SIZE;
+	}
+	
+	public Field(int size) {
+		// a field of any even size from 4 to 16, only 8x8 can play against every computer
+		this();
+		
+		if (size != Bitboard.SIZE) {
+			variant = VariantBoard.create(size);
+			variantMoves = new int[variant.getSquares()];
+			this.size = size;
+		}
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	Field(long one, long two, int currentUser) {
+		// sets up any position, used by the benchmarks and perft
+		this();
+		setPosition(one, two, currentUser);
+	}
+	
+	void setPosition(long one, long two, int currentUser) {
+		discs[PLAYER_ONE] = one;
+		discs[PLAYER_TWO] = two;
+		this.currentUser = currentUser;
+		hash = Zobrist.hash(one, two, currentUser);
+	}
+	
+	long getPieces(int player) {
+		// gives the pieces of a player as a bitboard
+		return discs[player];
 	}
 	
 	public void play() {
@@ -69,14 +154,24 @@ public class Field {
 		if (usingComputer) {
 			
 			// used to get input from the user with a limited number of valid inputs
-			String strDifficulty = Othello.getInput("What is the difficulty of the computer?"
-					+ " (Easy or Hard) ", new String[] { "easy", "hard" });
+			String strDifficulty = variant != null
+					? Othello.getInput("What is the difficulty of the computer? (Easy or Hard) ",
+							new String[] { "easy", "hard" })
+					: Othello.getInput("What is the difficulty of the computer?"
+							+ " (Easy, Hard, Expert, MCTS or Neural) ",
+							new String[] { "easy", "hard", "expert", "mcts", "neural" });
 			
 			// evaluate input from user
 			if (strDifficulty.equals("easy"))
 				difficulty = EASY;
-			else
+			else if (strDifficulty.equals("hard"))
 				difficulty = HARD;
+			else if (strDifficulty.equals("expert"))
+				difficulty = EXPERT;
+			else if (strDifficulty.equals("mcts"))
+				difficulty = MCTS;
+			else
+				difficulty = NEURAL;
 		}
 		
 		do {
@@ -87,20 +182,20 @@ public class Field {
 			// check if the current user has no spots to choose
 			if (legalPoints.size() == 0) {
 				
-				// find the user and other player
-				String user, otherPlayer;
-				if (currentUser == PLAYER_ONE) {
-					user = "one";
-					otherPlayer = usingComputer ? "The computer" : "Player two";
-				} else {
+				// find the user
+				String user;
+				if (currentUser == PLAYER_ONE)
+					user = "Player one";
+				else
 					user = usingComputer ? "The computer" : "Player two";
-					otherPlayer = "one";
-				}
 				
-				// tell the user that the other player has won
-				System.out.println(user + " does not have any legal points to player,\n"
-						+ "therefore " + otherPlayer + " has won.");
-				break;
+				// the turn passes to the other player, the game only ends if they can't move either
+				System.out.println(user + " does not have any legal points to play, so the turn passes.");
+				if (variant != null)
+					switchUser();
+				else
+					makeMove(PASS);
+				continue;
 			}
 			
 			// get a point from the user
@@ -115,20 +210,30 @@ public class Field {
 				// otherwise it's a real person
 				p = getPointFromUser(legalPoints);
 			
-			// input point into field
-			field[p.x][p.y] = currentUser;
+			// input point into field, flip the pieces from it and switch user
+			if (variant != null) {
+				variant.play(currentUser, variant.index(p.x, p.y));
+				switchUser();
+			} else
+				makeMove(Bitboard.index(p.x, p.y));
 			
-			// flip the pieces from the inputed point and print the field
-			ArrayList<Point> flippedPoints = getFlippedPoints(p);
-			flipPieces(flippedPoints);
+			// print the field
 			printField();
 			
-			// switch user
-			currentUser = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+			// the expert computer thinks about its next move while the user thinks about theirs
+			if (engine != null && currentUser == PLAYER_ONE)
+				engine.ponder(discs[PLAYER_ONE], discs[PLAYER_TWO], hash, PLAYER_ONE);
 			
 			// loops while the current player hasn't won
 		} while (!checkWin());
 		
+		if (engine != null)
+			engine.shutdown();
+		if (monteCarlo != null)
+			monteCarlo.shutdown();
+		if (hints != null)
+			hints.shutdown();
+		
 		// end game
 		System.out.println("Thank you for playing Othello!");
 	}
@@ -138,45 +243,133 @@ public class Field {
 		/* prints the field out, with blue for player 1 and
          * red for player 2 */
 		
-		// number the field (adding spaces to line up with the y-axis)
-		System.out.println("  1 2 3 4 5 6 7 8");
+		// the whole field is built first and printed at once
+		StringBuilder text = new StringBuilder(64 + size * size * 12);
+
+		// number the field (adding spaces to line up with the y-axis),
+		// numbers past 9 taking the space after them
+		text.append("  ");
+		for (int i = 1; i <= size; i++)
+			text.append(i).append(i < 10 ? " " : "");
+		text.append(System.lineSeparator());
 		
-		for (int i = 0; i < 8; i++)  {
+		for (int i = 0; i < size; i++)  {
 			
 			// number the field and add a space
-			System.out.print((i + 1) + " ");
+			text.append(i + 1).append(i < 9 ? " " : "");
 			
-			for (int j = 0; j < 8; j++) {
+			for (int j = 0; j < size; j++) {
 				
 				// prints different things based on who selected the piece of the field
-				switch(field[j][i]) {
+				switch(getPiece(j, i)) {
 					case PLAYER_ONE:
-						System.out.print(ANSI_BLACK + "O " + ANSI_RESET);
+						text.append(ANSI_BLACK).append("O ").append(ANSI_RESET);
 						break;
 					case PLAYER_TWO:
-						System.out.print(ANSI_WHITE + "O " + ANSI_RESET);
+						text.append(ANSI_WHITE).append("O ").append(ANSI_RESET);
 						break;
 					default:
-						System.out.print(ANSI_BLACK + "_ " + ANSI_RESET);
+						text.append(ANSI_BLACK).append("_ ").append(ANSI_RESET);
 				}
 			}
-			// print a new line
-			System.out.println();
+			// add a new line
+			text.append(System.lineSeparator());
+		}
+		System.out.print(text);
+		System.out.flush();
+	}
+	
+	private int getPiece(int x, int y) {
+		// gives who owns a point on the field
+		if (variant != null)
+			return variant.getPiece(variant.index(x, y));
+		
+		long square = Bitboard.square(x, y);
+		
+		if ((discs[PLAYER_ONE] & square) != 0)
+			return PLAYER_ONE;
+		else if ((discs[PLAYER_TWO] & square) != 0)
+			return PLAYER_TWO;
+		else
+			return EMPTY;
+	}
+	
+	public long getLegalMoves() {
+		// gives every legal move of the current user as a bitboard
+		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		return Bitboard.legalMoves(discs[currentUser], discs[otherPlayer]);
+	}
+	
+	public int getCurrentUser() {
+		return currentUser;
+	}
+	
+	public long getHash() {
+		return hash;
+	}
+	
+	public long makeMove(int square) {
+		// plays a legal move (or PASS) for the current user and switches user, giving
+		// the pieces it flipped, which unmakeMove needs to take the move back
+		
+		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		long flips = 0;
+		
+		if (square != PASS) {
+			flips = Bitboard.flips(discs[currentUser], discs[otherPlayer], square);
+			discs[currentUser] |= flips | (1L << square);
+			discs[otherPlayer] &= ~flips;
+			hash ^= Zobrist.piece(currentUser, square) ^ Zobrist.flips(flips);
+		}
+		
+		currentUser = otherPlayer;
+		hash ^= Zobrist.SIDE;
+		return flips;
+	}
+	
+	public void unmakeMove(int square, long flips) {
+		// takes back the last move, given the square and the flips makeMove gave
+		
+		// the user who made the move is the one before the current user
+		int mover = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		
+		if (square != PASS) {
+			discs[mover] &= ~(flips | (1L << square));
+			discs[currentUser] |= flips;
+			hash ^= Zobrist.piece(mover, square) ^ Zobrist.flips(flips);
 		}
+		
+		currentUser = mover;
+		hash ^= Zobrist.SIDE;
+	}
+	
+	private void switchUser() {
+		// a variant field keeps its own pieces and has no hash, so only the turn changes
+		currentUser = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
 	}
 	
-	private ArrayList<Point> getLegalPoints() {
+	ArrayList<Point> getLegalPoints() {
 		
 		// contains every legal point the user can choose
 		ArrayList<Point> legalPoints = new ArrayList<>();
 		
+		if (variant != null) {
+			// the variant field finds all of its moves at once too
+			int count = variant.legalMoves(currentUser, variantMoves);
+			for (int i = 0; i < count; i++)
+				legalPoints.add(new Point(variant.x(variantMoves[i]), variant.y(variantMoves[i])));
+			return legalPoints;
+		}
+		
+		// find all legal moves at once
+		long moves = getLegalMoves();
+		
 		for (int i = 0; i < 8; i++)
 			for (int j = 0; j < 8; j++) {
 				
-				// check if the current point is legal, and add it if it is
-				Point p = new Point(i, j);
-				if (isLegal(p))
-					legalPoints.add(p);
+				// add the current point if it is legal
+				if ((moves & Bitboard.square(i, j)) != 0)
+					legalPoints.add(new Point(i, j));
 			}
 		
 		return legalPoints;
@@ -186,12 +379,21 @@ public class Field {
 		// gets a legal point from the user
 		
 		System.out.print("Player " + (currentUser == PLAYER_ONE ? "one" : "two") + ", pick a point"
-				+ " on the field to put your piece in the form X-Y. (Ex: 1-3) ");
+				+ " on the field to put your piece in the form X-Y, or hint to see how good each point is. (Ex: 1-3) ");
 		
 		while(true) {
 			
+			String line = input.nextLine();
+			
+			// show the hints, then ask again
+			if (line.trim().equalsIgnoreCase("hint")) {
+				showHints(legalPoints);
+				System.out.print("Pick a point. ");
+				continue;
+			}
+			
 			// get answer in the form of two strings, holding x and y respectively
-			String[] stringAnswer = input.nextLine().split("-");
+			String[] stringAnswer = line.split("-");
 			
 			// integer values for points
 			int x, y;
@@ -207,7 +409,7 @@ public class Field {
 					continue;
 				}
 				
-				// subtract 1 because they pick 1-8 and the array is from 0-7
+				// subtract 1 because they pick from 1 and the array is from 0
 				Point p = new Point(x - 1, y - 1);
 				
 				// make sure the point they chose is legal
@@ -221,150 +423,85 @@ public class Field {
 		}
 	}
 	
-	private boolean isLegal(Point p) {
-		
-		// make sure the point is within the boundaries 1-8 inclusive
-		if (p.x < 0 || p.y < 0 || p.x > 7 || p.y > 7)
-			return false;
-		
-		// check if the piece is taken
-		if (field[p.x][p.y] != EMPTY)
-			return false;
+	private void showHints(ArrayList<Point> legalPoints) {
+		// scores every legal point for a while, then shows them best first
 		
-		// check if the piece is adjacent to an opponent's
-		boolean adjacent = false;
-		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		if (variant != null) {
+			System.out.println("Hints are only given on the 8x8 field.");
+			return;
+		}
 		
-		// use math.max and math.min the make sure no OutOfBoundsExceptions occur
-		for (int x = Math.max(p.x - 1, 0); x <= Math.min(p.x + 1, 7); x++) 
-			for (int y = Math.max(p.y - 1, 0); y <= Math.min(p.y + 1, 7); y++) {
-				
-				// don't test the current position
-				if (x == p.x && y == p.y)
-					continue;
-				
-				if (field[x][y] == otherPlayer) {
-					adjacent = true;
-					
-					// add to x to break from the first loop, then break from the second
-					x += 3;
-					break;
-				}
-			}
-		if (!adjacent)
-			return false;
+		if (hints == null)
+			hints = new Hints(Runtime.getRuntime().availableProcessors(), HINT_HASH_MB);
 		
-		// check if there is a piece across from the selected one
-		// and the space in between isn't empty
-		for (int x = 0; x < 8; x++) 
-			for (int y = 0; y < 8; y++) {
-				
-				// only check diagonals or straight lines
-				int xDist = Math.abs(p.x - x);
-				int yDist = Math.abs(p.y - y);
-				
-				// both p and the other point must be the user's pieces
-				if (field[x][y] == currentUser) {
-					if (xDist == yDist && xDist > 1) {
-						
-						// meaning the point is diagonal from the given point
-						// and far enough away so there is space for a point in between
-						if (checkDiagonalPointsBetween(p, new Point(x, y))) 
-							return true;
-						
-					} else if (xDist > 1 && yDist == 0) {
-						
-						// meaning it's a horizontal line from the given point
-						if (checkHorizontalPointsBetween(p, new Point(x, y)))
-							return true;
-						
-					} else if (yDist > 1 && xDist == 0) {
-						
-						// meaning it's a vertical line from the given point
-						if (checkVerticalPointsBetween(p, new Point(x, y))) 
-							return true;
-						
-					} else
-						// otherwise the point isn't diagonal or straight across
-						continue;
-				}
-			}
-			
-		// if none of the check points between return true, it isn't legal
-		return false;
-	}
-	
-	private boolean checkDiagonalPointsBetween(Point p, Point p2) {
-		// make sure none of the points are empty or the current user's
-		
-		// find the larger and smaller x's and the smaller y
-		int x1, x2, y;
-		if (p.x < p2.x) {
-			x1 = p.x;
-			x2 = p2.x;
-		} else {
-			x1 = p2.x;
-			x2 = p.x;
+		if (hash != hintedHash) {
+			hints.newPosition();
+			hintedHash = hash;
 		}
 		
-		if (p.y < p2.y)
-			y = p.y;
-		else 
-			y = p2.y;
+		long moves = 0;
+		for (Point p : legalPoints)
+			moves |= Bitboard.square(p.x, p.y);
 		
-		// x2 - x1 is the distance between the points, so it could be y1 - y2 also
-		for (int i = 1; i < x2 - x1; i++) {
-			
-			// make sure the pieces in between are the opponent's
-			if (field[x1 + i][y + i] == EMPTY || field[x1 + i][y + i] == currentUser)
-				return false;
-		}
+		// the scores as they come in, and those of the last depth every point was scored to
+		int[] scores = new int[Bitboard.SQUARES];
+		int[] shown = new int[Bitboard.SQUARES];
+		int[] depth = new int[1];
+		CountDownLatch finished = new CountDownLatch(1);
 		
-		return true;
-	}
-	
-	private boolean checkVerticalPointsBetween(Point p, Point p2) {
-		// make sure none of the points are empty or the current user's
+		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		Hints.Analysis analysis = hints.analyze(discs[currentUser], discs[otherPlayer], currentUser, moves,
+				new HintListener() {
+					
+					@Override
+					public void moveScored(int move, int moveDepth, int score) {
+						scores[move] = score;
+					}
+					
+					@Override
+					public void depthFinished(int finishedDepth) {
+						synchronized (shown) {
+							System.arraycopy(scores, 0, shown, 0, scores.length);
+							depth[0] = finishedDepth;
+						}
+					}
+					
+					@Override
+					public void finished(boolean cancelled) {
+						finished.countDown();
+					}
+				});
 		
-		Point smaller, larger;
-		if (p.y < p2.y) {
-			smaller = p;
-			larger = p2;
-		} else {
-			smaller = p2;
-			larger = p;
+		// stop early if the end of the game has been seen
+		try {
+			finished.await(HINT_TIME, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
+		analysis.cancel();
 		
-		for (int i = smaller.y + 1; i < larger.y; i++) {
+		synchronized (shown) {
+			ArrayList<Point> sorted = new ArrayList<>(legalPoints);
+			sorted.sort((a, b) -> shown[Bitboard.index(b.x, b.y)] - shown[Bitboard.index(a.x, a.y)]);
 			
-			// make sure the pieces in between are the opponent's
-			if (field[smaller.x][i] == EMPTY || field[smaller.x][i] == currentUser)
-				return false;
-		}	
-		
-		return true;
+			System.out.println("Each point looking " + depth[0] + " moves ahead, best first:");
+			for (Point p : sorted)
+				System.out.println("  " + (p.x + 1) + "-" + (p.y + 1) + ": "
+						+ Hints.describe(shown[Bitboard.index(p.x, p.y)]));
+		}
 	}
 	
-	private boolean checkHorizontalPointsBetween(Point p, Point p2) {
-		// make sure none of the points are empty or the current user's
+	boolean isLegal(Point p) {
 		
-		Point smaller, larger;
-		if (p.x < p2.x) {
-			smaller = p;
-			larger = p2;
-		} else {
-			smaller = p2;
-			larger = p;
-		}
+		// make sure the point is within the field
+		if (p.x < 0 || p.y < 0 || p.x >= size || p.y >= size)
+			return false;
 		
-		for (int i = smaller.x + 1; i < larger.x; i++) {
-			
-			// make sure the pieces in between are the opponent's
-			if (field[i][smaller.y] == EMPTY || field[i][smaller.y] == currentUser)
-				return false;
-		}	
+		if (variant != null)
+			return variant.isLegal(currentUser, variant.index(p.x, p.y));
 		
-		return true;
+		// the point is legal if it is one of the legal moves
+		return (getLegalMoves() & Bitboard.square(p.x, p.y)) != 0;
 	}
 	
 	private Point getComputerChoice(ArrayList<Point> inputs, int difficulty) {
@@ -374,25 +511,84 @@ public class Field {
 		// stores the computer's point
 		Point p;
 		
-		try {
-			
-			// wait a little bit so the computer doesn't instantly answer
-			Thread.sleep(1500);
-			
-		} catch (Exception e) {
-			e.printStackTrace();
+		// the expert, Monte Carlo and neural computers spend this time searching instead
+		if (difficulty == EASY || difficulty == HARD) {
+			try {
+				
+				// wait a little bit so the computer doesn't instantly answer
+				Thread.sleep(1500);
+				
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
 		}
 		
-		// keeps track of the number of points flipped for each input
-		int[] numFlipped = new int[inputs.size()];
-		
-		for (int i = 0; i < numFlipped.length; i++) {
+		if (difficulty == EXPERT) {
 			
-			// get the size of the array of flipped points
-			numFlipped[i] = getFlippedPoints(inputs.get(i)).size();
-		}
-		
-		if (difficulty == HARD) {
+			// the engine is only set up once the expert computer is needed,
+			// since its tables take a lot of memory
+			if (engine == null)
+				engine = new Engine();
+			
+			int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+			int move = engine.chooseMove(discs[currentUser], discs[otherPlayer], hash, currentUser,
+					EXPERT_TIME, ENDGAME_TIME);
+			
+			// tell the user how the move was found
+			System.out.println(engine.getReport());
+			
+			p = new Point(Bitboard.x(move), Bitboard.y(move));
+			
+		} else if (difficulty == MCTS) {
+			
+			// the tree is kept between moves, so it's made once like the engine
+			if (monteCarlo == null)
+				monteCarlo = new MonteCarloSearch(MCTS_NODES, Runtime.getRuntime().availableProcessors(),
+						MCTS_PLAYOUTS, System.nanoTime());
+			
+			int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+			int move = monteCarlo.findMove(discs[currentUser], discs[otherPlayer]);
+			
+			// tell the user how the move was found
+			System.out.printf("The computer ran %d playouts (%d kept from its last move) and won %.0f%% through its move.%n",
+					monteCarlo.getPlayouts(), monteCarlo.getReused(), monteCarlo.getWinRate() * 100);
+			
+			p = new Point(Bitboard.x(move), Bitboard.y(move));
+			
+		} else if (difficulty == NEURAL) {
+			
+			if (neural == null) {
+				NetworkEvaluator.loadDefaultWeights();
+				// only the time limits how deep it goes
+				neural = new Search(new TranspositionTable(NEURAL_HASH_MB), Bitboard.SQUARES, 0, EXPERT_TIME);
+				neural.setEvaluator(new NetworkEvaluator());
+			}
+			
+			int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+			int move = neural.findMove(discs[currentUser], discs[otherPlayer], hash, currentUser);
+			
+			// tell the user how the move was found
+			System.out.println("The computer searched " + neural.getNodes() + " positions to depth "
+					+ neural.getDepth() + ".");
+			
+			p = new Point(Bitboard.x(move), Bitboard.y(move));
+			
+		} else if (difficulty == HARD) {
+			
+			// keeps track of the number of points flipped for each input
+			int[] numFlipped = new int[inputs.size()];
+			int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+			
+			for (int i = 0; i < numFlipped.length; i++) {
+				
+				// count the flipped points straight from the bitboards
+				Point input = inputs.get(i);
+				if (variant != null)
+					numFlipped[i] = variant.flipCount(currentUser, variant.index(input.x, input.y));
+				else
+					numFlipped[i] = Bitboard.count(Bitboard.flips(discs[currentUser], discs[otherPlayer],
+						Bitboard.index(input.x, input.y)));
+			}
 			
 			// the index of the highest number of flipped points,
 			// and the highest number itself
@@ -428,232 +624,68 @@ public class Field {
 		return p;
 	}
 	
-	private ArrayList<Point> getFlippedPoints(Point lastPoint) {
+	ArrayList<Point> getFlippedPoints(Point lastPoint) {
 		// outputs the points that would be flipped with a given input
 		
 		// keeps track of the flipped points
 		ArrayList<Point> flipped = new ArrayList<>();
 		
-		// stores which directions have found points
-		final int TOP = 0, TOP_RIGHT = 1, RIGHT = 2, BOTTOM_RIGHT = 3,
-				BOTTOM = 4, BOTTOM_LEFT = 5, LEFT = 6, TOP_LEFT = 7;
-		boolean[] pointsFound = new boolean[8];
-		for (int i = 0; i < 8; i++)
-			pointsFound[i] = false;
+		if (variant != null) {
+			int count = variant.flips(currentUser, variant.index(lastPoint.x, lastPoint.y), variantMoves);
+			for (int i = 0; i < count; i++)
+				flipped.add(new Point(variant.x(variantMoves[i]), variant.y(variantMoves[i])));
+			return flipped;
+		}
 		
-		// goes in all directions to find if any pieces should be flipped
-		for (int i = 1; i < 8; i++) {
-			
-			// top point
-			if (lastPoint.y - i >= 0 && !pointsFound[TOP]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x][lastPoint.y - i] == EMPTY)
-					pointsFound[TOP] = true;
-				
-				else if (field[lastPoint.x][lastPoint.y - i] == currentUser) {
-					
-					// then add the flipped points to the array list
-					for (int j = 1; j < i; j++) 
-						flipped.add(new Point(lastPoint.x, lastPoint.y - j));
-					
-					// remember that it was found
-					pointsFound[TOP] = true;
-					
-				}
-			}
-			
-			// top right point
-			if (lastPoint.y - i >= 0 && lastPoint.x + i < 8 && !pointsFound[TOP_RIGHT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x + i][lastPoint.y - i] == EMPTY)
-					pointsFound[TOP_RIGHT] = true;
-				
-				else if (field[lastPoint.x + i][lastPoint.y - i] == currentUser) {
-					
-					// then flip all pieces in between this point and lastPoint
-					for (int j = 1; j < i; j++) {
-						
-						// make sure each point is within the bounds 0-7
-						if (lastPoint.y - j >= 0 && lastPoint.x + j < 8) 
-							flipped.add(new Point(lastPoint.x + j, lastPoint.y - j));
-						// otherwise the loop is ended
-						else
-							break;
-					}
-					
-					// remember that it was found
-					pointsFound[TOP_RIGHT] = true;
-					
-				}
-			}
-			
-			// right point
-			if (lastPoint.x + i < 8 && !pointsFound[RIGHT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x + i][lastPoint.y] == EMPTY) 
-					pointsFound[RIGHT] = true;
-				
-				else if (field[lastPoint.x + i][lastPoint.y] == currentUser) {
-
-					// then add the flipped points to the array list
-					for (int j = 1; j < i; j++) 
-						flipped.add(new Point(lastPoint.x + j, lastPoint.y));
-					
-					// remember that it was found
-					pointsFound[RIGHT] = true;
-					
-				}
-			}
-			
-			// bottom right point
-			if (lastPoint.y + i < 8 && lastPoint.x + i < 8 && !pointsFound[BOTTOM_RIGHT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x + i][lastPoint.y + i] == EMPTY)
-					pointsFound[BOTTOM_RIGHT] = true;
-				
-				else if (field[lastPoint.x + i][lastPoint.y + i] == currentUser) {
-					
-					// then flip all pieces in between this point and lastPoint
-					for (int j = 1; j < i; j++) {
-						
-						// make sure each point is within the bounds 0-7
-						if (lastPoint.y + j < 8 && lastPoint.x + j < 8) 
-							flipped.add(new Point(lastPoint.x + j, lastPoint.y + j));
-						// otherwise the loop is ended
-						else
-							break;
-					}
-					
-					// remember that it was found
-					pointsFound[BOTTOM_RIGHT] = true;
-					
-				}
-			}
-			
-			// bottom point
-			if (lastPoint.y + i < 7 && !pointsFound[BOTTOM]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x][lastPoint.y + i] == EMPTY)
-					pointsFound[BOTTOM] = true;
-				
-				else if (field[lastPoint.x][lastPoint.y + i] == currentUser) {
-
-					// then add the flipped points to the array list
-					for (int j = 1; j < i; j++) 
-						flipped.add(new Point(lastPoint.x, lastPoint.y + j));
-					
-					// remember that it was found
-					pointsFound[BOTTOM] = true;
-					
-				}
-			}
-			
-			// bottom left point
-			if (lastPoint.y + i < 8 && lastPoint.x - i >= 0 && !pointsFound[BOTTOM_LEFT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x - i][lastPoint.y + i] == EMPTY)
-					pointsFound[BOTTOM_LEFT] = true;
-				
-				else if (field[lastPoint.x - i][lastPoint.y + i] == currentUser) {
-					
-					// then flip all pieces in between this point and lastPoint
-					for (int j = 1; j < i; j++) {
-						
-						// make sure each point is within the bounds 0-7
-						if (lastPoint.y + j < 8 && lastPoint.x - j >= 0) 
-							flipped.add(new Point(lastPoint.x - j, lastPoint.y + j));
-						// otherwise the loop is ended
-						else
-							break;
-					}
-					
-					// remember that it was found
-					pointsFound[BOTTOM_LEFT] = true;
-					
-				}
-			}
-			
-			// left point
-			if (lastPoint.x - i >= 0 && !pointsFound[LEFT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x - i][lastPoint.y] == EMPTY)
-					pointsFound[LEFT] = true;
-
-				else if (field[lastPoint.x - i][lastPoint.y] == currentUser) {
-
-					// then add the flipped points to the array list
-					for (int j = 1; j < i; j++) 
-						flipped.add(new Point(lastPoint.x - j, lastPoint.y));
-					
-					// remember that it was found
-					pointsFound[LEFT] = true;
-					
-				}
-			}
-			
-			// top left point
-			if (lastPoint.y - i >= 0 && lastPoint.x - i >= 0 && !pointsFound[TOP_LEFT]) {
-				
-				// if there's an empty space, no spots can be flipped
-				if (field[lastPoint.x - i][lastPoint.y - i] == EMPTY)
-					pointsFound[TOP_LEFT] = true;
-				
-				else if (field[lastPoint.x - i][lastPoint.y - i] == currentUser) {
-					
-					// then flip all pieces in between this point and lastPoint
-					for (int j = 1; j < i; j++) {
-						
-						// make sure each point is within the bounds 0-7
-						if (lastPoint.y - j >= 0 && lastPoint.x - j >= 0) 
-							flipped.add(new Point(lastPoint.x - j, lastPoint.y - j));
-						// otherwise the loop is ended
-						else
-							break;
-					}
-					
-					// remember that it was found
-					pointsFound[TOP_LEFT] = true;
-					
-				}
-			}
+		// find every flipped piece in all directions at once
+		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		long flips = Bitboard.flips(discs[currentUser], discs[otherPlayer],
+				Bitboard.index(lastPoint.x, lastPoint.y));
+		
+		// turn each flipped piece into a point
+		while (flips != 0) {
+			int index = Long.numberOfTrailingZeros(flips);
+			flipped.add(new Point(Bitboard.x(index), Bitboard.y(index)));
+			flips &= flips - 1;
 		}
 		
 		return flipped;
 	}
 	
-	private void flipPieces(ArrayList<Point> points) {
+	void flipPieces(ArrayList<Point> points) {
 		// flips all of the inputed points
+		int otherPlayer = currentUser == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		
 		for (int i = 0; i < points.size(); i++) {
 			Point p = points.get(i);
-			field[p.x][p.y] = currentUser;
+			if (variant != null) {
+				variant.set(currentUser, variant.index(p.x, p.y));
+				continue;
+			}
+			long square = Bitboard.square(p.x, p.y);
+			discs[currentUser] |= square;
+			discs[otherPlayer] &= ~square;
+			hash ^= Zobrist.flip(Bitboard.index(p.x, p.y));
 		}
 	}
 	
-	private boolean checkWin() {
+	public boolean isGameOver() {
+		// the game goes on while either player can move, which is never once the field is full
+		if (variant != null)
+			return variant.isGameOver();
+		return Bitboard.count(discs[PLAYER_ONE] | discs[PLAYER_TWO]) == Bitboard.SQUARES
+				|| (Bitboard.legalMoves(discs[PLAYER_ONE], discs[PLAYER_TWO]) == 0
+				&& Bitboard.legalMoves(discs[PLAYER_TWO], discs[PLAYER_ONE]) == 0);
+	}
+	
+	boolean checkWin() {
 		
-		// numbers to keep track of who has more
-		int one = 0, two = 0;
+		if (!isGameOver())
+			return false;
 		
-		for (int i = 0; i < 8; i++) 
-			for (int j = 0; j < 8; j++) {
-				
-				// make sure no spaces are empty
-				if (field[i][j] == EMPTY)
-					return false;
-				
-				// add to the number each player has
-				else if (field[i][j] == PLAYER_ONE)
-					one++;
-				else
-					two++;
-			}
+		// numbers to keep track of who has more
+		int one = variant != null ? variant.count(PLAYER_ONE) : Bitboard.count(discs[PLAYER_ONE]);
+		int two = variant != null ? variant.count(PLAYER_TWO) : Bitboard.count(discs[PLAYER_TWO]);
 		
 		// evaluate numbers
 		if (one != two) {
@@ -0,0 +1,92 @@
+/*
+ * This class plays a whole game between two computer players with no
+ * input, output or waiting. A player with no legal moves passes, and
+ * the game ends when neither player can move. The moves are kept so the
+ * game can be written out afterwards.
+ */
+
+public class Game {
+
+	// the pieces of each player (indexed by player)
+	private long[] discs;
+
+	// the player whose turn it is
+	private int currentUser;
+
+	// every move played, passes are left out since they can be worked out
+	private byte[] moves = new byte[Bitboard.SQUARES];
+	private int moveCount;
+
+	// where the game is shown while it's played, if anywhere
+	private BoardRenderer renderer;
+	private int tile;
+	private long number;
+
+	public Game() {
+		discs = new long[3];
+		discs[Field.PLAYER_ONE] = Bitboard.START_ONE;
+		discs[Field.PLAYER_TWO] = Bitboard.START_TWO;
+		currentUser = Field.PLAYER_ONE;
+	}
+
+	public void watch(BoardRenderer renderer, int tile, long number) {
+		// shows the game as game number in a tile of the renderer
+		this.renderer = renderer;
+		this.tile = tile;
+		this.number = number;
+	}
+
+	public int play(Player one, Player two) {
+		// plays until the end and gives player one's pieces minus player two's
+
+		boolean passed = false;
+		if (renderer != null)
+			renderer.update(tile, number, discs[Field.PLAYER_ONE], discs[Field.PLAYER_TWO]);
+
+		while (true) {
+			int otherPlayer = currentUser == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+			long own = discs[currentUser], opp = discs[otherPlayer];
+
+			if (Bitboard.legalMoves(own, opp) == 0) {
+
+				// the game ends when both players have to pass
+				if (passed)
+					break;
+				passed = true;
+
+			} else {
+				passed = false;
+
+				// ask the current player for a move and make it
+				Player player = currentUser == Field.PLAYER_ONE ? one : two;
+				int move = player.chooseMove(own, opp, currentUser);
+				long flips = Bitboard.flips(own, opp, move);
+
+				discs[currentUser] = own | flips | (1L << move);
+				discs[otherPlayer] = opp & ~flips;
+				moves[moveCount++] = (byte) move;
+
+				if (renderer != null)
+					renderer.update(tile, number, discs[Field.PLAYER_ONE], discs[Field.PLAYER_TWO]);
+			}
+
+			currentUser = otherPlayer;
+		}
+
+		return getDiscCount(Field.PLAYER_ONE) - getDiscCount(Field.PLAYER_TWO);
+	}
+
+	public int getDiscCount(int player) {
+		return Bitboard.count(discs[player]);
+	}
+
+	public String getRecord() {
+		// the moves in standard form (f5d6c3...) followed by player one's pieces minus player two's
+		StringBuilder record = new StringBuilder(moveCount * 2 + 4);
+		for (int i = 0; i < moveCount; i++)
+			record.append(Bitboard.toText(moves[i]));
+		return record.append(' ')
+				.append(getDiscCount(Field.PLAYER_ONE) - getDiscCount(Field.PLAYER_TWO)).toString();
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * This class plays the move that flips the most pieces, like the hard
+ * computer. Ties go to the first move going down each column from the
+ * left, the same order the field lists legal points in.
+ */
+
+public class GreedyPlayer implements Player {
+
+	@Override
+	public void newGame(long seed) {
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int player) {
+		long moves = Bitboard.legalMoves(own, opp);
+		int best = -1, highest = -1;
+
+		for (int x = 0; x < Bitboard.SIZE; x++)
+			for (int y = 0; y < Bitboard.SIZE; y++) {
+				int index = Bitboard.index(x, y);
+				if ((moves & (1L << index)) == 0)
+					continue;
+
+				// keep the move if it flips more than the best so far
+				int flipped = Bitboard.count(Bitboard.flips(own, opp, index));
+				if (flipped > highest) {
+					highest = flipped;
+					best = index;
+				}
+			}
+
+		return best;
+	}
+
+}
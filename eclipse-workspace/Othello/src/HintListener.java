@@ -0,0 +1,22 @@
+/*
+ * This interface is told the scores of the moves Hints is analyzing as
+ * they come in. Scores are for the player to move, in the search's
+ * units, with a won game above Search.WIN. The calls for one analysis
+ * never overlap, but they come from the worker threads (and the first
+ * depth from the thread that asked), so they should return quickly.
+ */
+
+public interface HintListener {
+
+	// a move was searched to the depth, a later depth replaces the score
+	void moveScored(int move, int depth, int score);
+
+	// every move has been scored to the depth
+	default void depthFinished(int depth) {
+	}
+
+	// the analysis is over, because it went as deep as the game goes or was cancelled
+	default void finished(boolean cancelled) {
+	}
+
+}
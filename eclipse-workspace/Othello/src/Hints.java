@@ -0,0 +1,194 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * This class scores every legal move of a position at once, for showing
+ * players hints. Each move is searched with a full window so its score
+ * is exact, one depth after another, and every score is handed to a
+ * HintListener as soon as it is found. The first depth is searched
+ * before analyze returns, so the first scores come straight away however
+ * busy the workers are.
+ *
+ * Deeper depths run on a shared pool of workers, which share one table.
+ * Each analysis only searches one depth before going to the back of the
+ * queue, so many analyses at once take turns instead of waiting for each
+ * other to finish. An analysis can be cancelled at any time, which stops
+ * the search running it straight away. Analyses don't age the table
+ * themselves, since one starting would age it under the others, so
+ * whoever owns the hints calls newPosition when the game moves on.
+ */
+
+public class Hints {
+
+	public static final int DEFAULT_HASH_MB = 64;
+
+	private final TranspositionTable table;
+	private final ExecutorService pool;
+
+	// each thread searching, the workers and whoever calls analyze, keeps its own search
+	private final ThreadLocal<Search> searches;
+
+	public Hints(int threads, int hashMegabytes) {
+		table = new TranspositionTable(hashMegabytes);
+		searches = ThreadLocal.withInitial(() -> new Search(table, Bitboard.SQUARES, 0));
+		pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "hints");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public Analysis analyze(long own, long opp, int player, long moves, HintListener listener) {
+		// starts scoring the given legal moves of the player owning own, giving the analysis to cancel it
+
+		Analysis analysis = new Analysis(own, opp, player, moves, listener);
+		if (analysis.searchDepth(searches.get()))
+			pool.execute(analysis::run);
+		return analysis;
+	}
+
+	public void newPosition() {
+		// ages the table so results from earlier positions are replaced first, only to be called
+		// by the one thread that owns these hints, and not while its analyses of the last position run
+		table.newSearch();
+	}
+
+	public static String describe(int score) {
+		// a score as people read it, won and lost games by how many pieces
+		if (score >= Search.WIN - Bitboard.SQUARES)
+			return "wins by " + (score - Search.WIN);
+		if (score <= -Search.WIN + Bitboard.SQUARES)
+			return "loses by " + (-Search.WIN - score);
+		return String.format("%+d", score);
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	public final class Analysis {
+
+		private final long own, opp, hash;
+		private final int player;
+		private final HintListener listener;
+
+		// the moves in the order they're searched, best first after each depth, and their scores
+		private final int[] moves;
+		private final int[] scores;
+
+		// the last depth every move was scored to, and how deep the game goes
+		private int depth;
+		private final int maxDepth;
+
+		private volatile boolean cancelled;
+
+		// the search working on this analysis right now, so cancel can stop it
+		private volatile Search running;
+
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Analysis(long own, long opp, int player, long moves, HintListener listener) {
+			this.own = own;
+			this.opp = opp;
+			this.player = player;
+			this.listener = listener;
+			hash = player == Field.PLAYER_ONE ? Zobrist.hash(own, opp, player) : Zobrist.hash(opp, own, player);
+
+			this.moves = new int[Bitboard.count(moves)];
+			for (int i = 0; moves != 0; moves &= moves - 1)
+				this.moves[i++] = Long.numberOfTrailingZeros(moves);
+			scores = new int[this.moves.length];
+
+			// searching past the last empty square finds nothing new
+			maxDepth = Bitboard.SQUARES - Bitboard.count(own | opp);
+		}
+
+		private void run() {
+			// searches the next depth on a worker, then goes to the back of the queue for the one after
+			if (searchDepth(searches.get())) {
+				try {
+					pool.execute(this::run);
+				} catch (RuntimeException e) {
+					// the pool was shut down
+					finish(true);
+				}
+			}
+		}
+
+		private boolean searchDepth(Search search) {
+			// scores every move one depth deeper than the last, giving whether to go on
+
+			int next = depth + 1;
+			search.resume();
+			running = search;
+
+			try {
+				for (int i = 0; i < moves.length; i++) {
+					if (cancelled)
+						break;
+
+					int score = search.scoreMove(own, opp, hash, player, moves[i], next);
+
+					// the search may also have been stopped by a late cancel of another analysis,
+					// then the depth is simply searched again
+					if (search.isStopped())
+						return !cancelled || finish(true);
+
+					scores[i] = score;
+					listener.moveScored(moves[i], next, score);
+				}
+			} finally {
+				running = null;
+			}
+
+			if (cancelled)
+				return finish(true);
+
+			depth = next;
+			sort();
+			listener.depthFinished(depth);
+
+			// every score is final once the end of the game has been seen
+			boolean settled = true;
+			for (int score : scores)
+				settled &= Math.abs(score) >= Search.WIN - Bitboard.SQUARES;
+
+			return depth < maxDepth && !settled || finish(false);
+		}
+
+		private void sort() {
+			// puts the best moves first, so the next depth finds their results in the table
+			for (int i = 1; i < moves.length; i++)
+				for (int j = i; j > 0 && scores[j] > scores[j - 1]; j--) {
+					int score = scores[j];
+					scores[j] = scores[j - 1];
+					scores[j - 1] = score;
+					int move = moves[j];
+					moves[j] = moves[j - 1];
+					moves[j - 1] = move;
+				}
+		}
+
+		private boolean finish(boolean wasCancelled) {
+			// tells the listener once that the analysis is over, always giving false to stop
+			if (done.compareAndSet(false, true))
+				listener.finished(wasCancelled);
+			return false;
+		}
+
+		public void cancel() {
+			// stops the analysis, the listener hears nothing more but finished
+			cancelled = true;
+			Search search = running;
+			if (search != null)
+				search.abort();
+		}
+
+		public boolean isDone() {
+			return done.get();
+		}
+
+	}
+
+}
@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+/*
+ * This class collects how long something took, many times over, and
+ * reports percentiles of it. It is not thread safe, each thread (or
+ * session) keeps its own and they can be merged afterwards.
+ */
+
+public class LatencyStats {
+
+	// every time recorded, in nanoseconds
+	private long[] times = new long[64];
+	private int count;
+
+	public void add(long nanos) {
+		if (count == times.length)
+			times = Arrays.copyOf(times, count * 2);
+		times[count++] = nanos;
+	}
+
+	public void merge(LatencyStats other) {
+		for (int i = 0; i < other.count; i++)
+			add(other.times[i]);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long percentile(double percent) {
+		// gives the time that the given percent of all times are at or under, 0 if there are none
+		if (count == 0)
+			return 0;
+
+		long[] sorted = Arrays.copyOf(times, count);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percent / 100 * count);
+		return sorted[Math.max(0, Math.min(count, rank) - 1)];
+	}
+
+	@Override
+	public String toString() {
+		// sums the times up on one line, in milliseconds
+		return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", count,
+				percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, percentile(100) / 1e6);
+	}
+
+}
@@ -0,0 +1,29 @@
+/*
+ * This class plays the move found by Monte Carlo tree search with a
+ * fixed number of playouts, on one thread so many games can run side by
+ * side. The tree is kept from move to move within a game.
+ */
+
+public class MonteCarloPlayer implements Player {
+
+	// positions the tree has room for, for each playout of a move
+	private static final int NODES_PER_PLAYOUT = 4;
+
+	private MonteCarloSearch search;
+
+	public MonteCarloPlayer(int playouts) {
+		search = new MonteCarloSearch(playouts * NODES_PER_PLAYOUT, 1, playouts, 0);
+	}
+
+	@Override
+	public void newGame(long seed) {
+		search.clear();
+		search.setSeed(seed);
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int player) {
+		return search.findMove(own, opp);
+	}
+
+}
@@ -0,0 +1,451 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * This class finds a move with Monte Carlo tree search instead of a
+ * searched evaluation. Each playout walks down the tree, picking children
+ * with UCT, grows the tree by one position, plays the game out with
+ * quick, mostly random moves, and adds the result to every position it
+ * passed. The move played is the one tried most often.
+ *
+ * The tree is kept in an arena of parallel arrays sized up front instead
+ * of an object for each position, and the children of a position sit
+ * next to each other in it. When the arena fills up the tree stops
+ * growing, but the playouts go on from its leaves.
+ *
+ * Several threads can share one tree. A thread counts its visit to each
+ * position on the way down, before the result is known, which makes that
+ * path look worse to the others for a while (virtual loss) and spreads
+ * the threads over different moves.
+ *
+ * Between moves, the part of the tree under the position that was reached
+ * is copied to the front of a second arena and searched on from there.
+ */
+
+public class MonteCarloSearch {
+
+	// playouts for each move when none are given
+	public static final int DEFAULT_PLAYOUTS = 100000;
+
+	// how strongly UCT prefers moves that haven't been tried much
+	private static final double EXPLORATION = 1.0;
+
+	// a position grows children once it has been visited this often
+	private static final int EXPAND_VISITS = 2;
+
+	// first child values meaning no children yet, being added, or none ever (the game is over)
+	private static final int LEAF = 0;
+	private static final int EXPANDING = -1;
+	private static final int FINISHED = -2;
+
+	// playouts take a corner whenever there is one, otherwise any move
+	private static final long CORNERS = 0x8100000000000081L;
+
+	// results are counted in half points, a draw being one
+	private static final int WIN = 2;
+	private static final int DRAW = 1;
+	private static final int LOSS = 0;
+
+	// longest path through the tree, every move plus a pass before each
+	private static final int MAX_PATH = Bitboard.SQUARES * 2 + 2;
+
+	// the tree being searched, and the one the reused part is copied into
+	private Tree tree, spare;
+
+	// which position of the old tree each position of the copy came from
+	private int[] source;
+
+	private final int playouts;
+	private long seed;
+
+	// runs the helpers, the main thread runs playouts of its own
+	private ExecutorService pool;
+	private int helpers;
+
+	// playouts still to be run for this move
+	private final AtomicInteger remaining = new AtomicInteger();
+
+	// results of the last search
+	private int reused;
+	private long searchTime;
+
+	// the arrays of one tree, the root is always position 0
+	private static class Tree {
+
+		// the side to move's pieces and the other side's, and the move that led here
+		final long[] own, opp;
+		final byte[] move;
+
+		// where the children start and how many there are
+		final AtomicIntegerArray firstChild;
+		final byte[] childCount;
+
+		// playouts through here, and their half points for the side that moved here
+		final AtomicIntegerArray visits, score;
+
+		final AtomicInteger size = new AtomicInteger();
+
+		Tree(int capacity) {
+			own = new long[capacity];
+			opp = new long[capacity];
+			move = new byte[capacity];
+			firstChild = new AtomicIntegerArray(capacity);
+			childCount = new byte[capacity];
+			visits = new AtomicIntegerArray(capacity);
+			score = new AtomicIntegerArray(capacity);
+		}
+
+		int capacity() {
+			return own.length;
+		}
+
+		void set(int node, long own, long opp, int move) {
+			this.own[node] = own;
+			this.opp[node] = opp;
+			this.move[node] = (byte) move;
+			childCount[node] = 0;
+			visits.set(node, 0);
+			score.set(node, 0);
+			firstChild.set(node, LEAF);
+		}
+
+	}
+
+	public MonteCarloSearch(int nodes, int threads, int playouts, long seed) {
+		// the arena needs room for at least the root and its children
+		nodes = Math.max(nodes, Bitboard.SQUARES + 1);
+		this.playouts = playouts;
+		this.seed = seed;
+
+		tree = new Tree(nodes);
+		spare = new Tree(nodes);
+		source = new int[nodes];
+
+		helpers = Math.max(0, threads - 1);
+		if (helpers > 0)
+			pool = Executors.newFixedThreadPool(helpers, runnable -> {
+				Thread thread = new Thread(runnable, "mcts-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+
+	public void clear() {
+		// forgets the tree, so the next move starts from nothing
+		tree.size.set(0);
+	}
+
+	public void setSeed(long seed) {
+		// the same seed and position give the same move on one thread
+		this.seed = seed;
+	}
+
+	public int findMove(long own, long opp) {
+		// gives the best square for the player owning own, or -1 if there are no moves
+
+		if (Bitboard.legalMoves(own, opp) == 0)
+			return Field.PASS;
+
+		long start = System.nanoTime();
+		setRoot(own, opp);
+
+		// the root always has its children, so there is a move to give however few playouts are run
+		if (tree.firstChild.get(0) == LEAF)
+			expand(tree, 0);
+		remaining.set(playouts);
+
+		// the helpers run beside the main thread, each with its own random numbers
+		List<Future<?>> running = new ArrayList<>();
+		for (int i = 1; i <= helpers; i++) {
+			long helperSeed = seed + i;
+			running.add(pool.submit(() -> run(helperSeed)));
+		}
+		run(seed);
+
+		for (Future<?> future : running) {
+			try {
+				future.get();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		searchTime = (System.nanoTime() - start) / 1000000;
+
+		return tree.move[bestChild()];
+	}
+
+	private int bestChild() {
+		// the move tried the most is the one the search trusts the most
+		int first = tree.firstChild.get(0), best = first;
+		for (int child = first + 1; child < first + tree.childCount[0]; child++)
+			if (tree.visits.get(child) > tree.visits.get(best))
+				best = child;
+		return best;
+	}
+
+	private void setRoot(long own, long opp) {
+		// reuses what is known of the position from the last search, or starts a new tree
+
+		int node = tree.size.get() > 0 ? find(own, opp) : -1;
+		if (node < 0) {
+			tree.size.set(1);
+			tree.set(0, own, opp, Field.PASS);
+			reused = 0;
+			return;
+		}
+
+		reused = tree.visits.get(node);
+		if (node == 0)
+			return;
+
+		// copy the subtree breadth first, so every family of children stays together
+		spare.set(0, own, opp, Field.PASS);
+		spare.visits.set(0, tree.visits.get(node));
+		spare.score.set(0, tree.score.get(node));
+		source[0] = node;
+		int size = 1;
+
+		for (int copy = 0; copy < size; copy++) {
+			int old = source[copy];
+			int first = tree.firstChild.get(old);
+
+			if (first > 0) {
+				int count = tree.childCount[old];
+				for (int i = 0; i < count; i++) {
+					int from = first + i, to = size + i;
+					spare.set(to, tree.own[from], tree.opp[from], tree.move[from]);
+					spare.visits.set(to, tree.visits.get(from));
+					spare.score.set(to, tree.score.get(from));
+					source[to] = from;
+				}
+				spare.childCount[copy] = (byte) count;
+				spare.firstChild.set(copy, size);
+				size += count;
+			} else if (first == FINISHED) {
+				spare.firstChild.set(copy, FINISHED);
+			}
+		}
+		spare.size.set(size);
+
+		Tree swap = tree;
+		tree = spare;
+		spare = swap;
+	}
+
+	private int find(long own, long opp) {
+		// the position in the tree two moves down at most, after our move and the reply, or -1
+
+		if (tree.own[0] == own && tree.opp[0] == opp)
+			return 0;
+
+		int first = tree.firstChild.get(0);
+		for (int child = first; first > 0 && child < first + tree.childCount[0]; child++) {
+			int grandFirst = tree.firstChild.get(child);
+			for (int grand = grandFirst; grandFirst > 0 && grand < grandFirst + tree.childCount[child]; grand++)
+				if (tree.own[grand] == own && tree.opp[grand] == opp)
+					return grand;
+		}
+
+		return -1;
+	}
+
+	private void run(long seed) {
+		// runs playouts until none are left for this move
+
+		Playouts playouts = new Playouts(seed);
+		while (remaining.getAndDecrement() > 0)
+			playout(playouts);
+	}
+
+	private void playout(Playouts playouts) {
+		// one walk down the tree, a game played out from where it ends, and the result added on the way back
+
+		Tree tree = this.tree;
+		int[] path = playouts.path;
+		int node = 0, depth = 0;
+		tree.visits.getAndIncrement(0);
+		path[depth++] = 0;
+
+		while (true) {
+			int first = tree.firstChild.get(node);
+			if (first == LEAF && tree.visits.get(node) >= EXPAND_VISITS)
+				first = expand(tree, node);
+			if (first <= 0)
+				break;
+
+			node = select(tree, node, first);
+
+			// counting the visit now is the virtual loss other threads see until the result is added
+			tree.visits.getAndIncrement(node);
+			path[depth++] = node;
+		}
+
+		int result = rollout(tree.own[node], tree.opp[node], playouts);
+
+		// each position keeps the result for the side that moved into it
+		while (depth > 0) {
+			result = WIN - result;
+			tree.score.getAndAdd(path[--depth], result);
+		}
+	}
+
+	private int expand(Tree tree, int node) {
+		// adds the children of a position, giving where they start, or a leaf value if they weren't added
+
+		if (!tree.firstChild.compareAndSet(node, LEAF, EXPANDING))
+			return tree.firstChild.get(node);
+
+		long own = tree.own[node], opp = tree.opp[node];
+		long moves = Bitboard.legalMoves(own, opp);
+
+		// a player without moves passes, and the game is over if neither can move
+		int count = Long.bitCount(moves);
+		if (count == 0 && Bitboard.legalMoves(opp, own) == 0) {
+			tree.firstChild.set(node, FINISHED);
+			return FINISHED;
+		}
+		count = Math.max(count, 1);
+
+		// once the arena is full the tree stops growing
+		int first = tree.size.get() + count <= tree.capacity() ? tree.size.getAndAdd(count) : tree.capacity();
+		if (first + count > tree.capacity()) {
+			tree.firstChild.set(node, LEAF);
+			return LEAF;
+		}
+
+		if (moves == 0)
+			tree.set(first, opp, own, Field.PASS);
+		for (int child = first; moves != 0; moves &= moves - 1, child++) {
+			int move = Long.numberOfTrailingZeros(moves);
+			long flips = Bitboard.flips(own, opp, move);
+			tree.set(child, opp & ~flips, own | flips | (1L << move), move);
+		}
+
+		// the children are only seen by other threads once they are all set
+		tree.childCount[node] = (byte) count;
+		tree.firstChild.set(node, first);
+		return first;
+	}
+
+	private int select(Tree tree, int node, int first) {
+		// the child with the best UCT value, or the first one not tried yet
+
+		double logVisits = Math.log(tree.visits.get(node));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+
+		for (int child = first; child < first + tree.childCount[node]; child++) {
+			int visits = tree.visits.get(child);
+			if (visits == 0)
+				return child;
+
+			double value = tree.score.get(child) / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+
+		return best;
+	}
+
+	private static int rollout(long own, long opp, Playouts playouts) {
+		// plays the game out and gives the half points of the side to move
+
+		boolean passed = false, swapped = false;
+
+		while (true) {
+			long moves = Bitboard.legalMoves(own, opp);
+
+			if (moves == 0) {
+				if (passed)
+					break;
+				passed = true;
+			} else {
+				passed = false;
+
+				long corners = moves & CORNERS;
+				if (corners != 0)
+					moves = corners;
+
+				// skip a random number of moves and take the next one
+				for (int skip = playouts.nextInt(Long.bitCount(moves)); skip > 0; skip--)
+					moves &= moves - 1;
+				int move = Long.numberOfTrailingZeros(moves);
+
+				long flips = Bitboard.flips(own, opp, move);
+				own |= flips | (1L << move);
+				opp &= ~flips;
+			}
+
+			long swap = own;
+			own = opp;
+			opp = swap;
+			swapped = !swapped;
+		}
+
+		int difference = Bitboard.count(own) - Bitboard.count(opp);
+		if (swapped)
+			difference = -difference;
+		return difference > 0 ? WIN : difference < 0 ? LOSS : DRAW;
+	}
+
+	// what one thread needs to run playouts: the path it took down the tree and its random numbers
+	private static class Playouts {
+
+		final int[] path = new int[MAX_PATH];
+		long random;
+
+		Playouts(long seed) {
+			// xorshift never leaves zero, so the seed is mixed into a state that isn't
+			random = seed * 0x9E3779B97F4A7C15L | 1;
+		}
+
+		int nextInt(int bound) {
+			// xorshift, quick enough to use for every move of a playout
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			return (int) (((random >>> 32) * bound) >>> 32);
+		}
+
+	}
+
+	public int getPlayouts() {
+		return playouts;
+	}
+
+	public int getNodes() {
+		// positions in the tree after the last search
+		return Math.min(tree.size.get(), tree.capacity());
+	}
+
+	public int getReused() {
+		// playouts kept from the search before
+		return reused;
+	}
+
+	public long getSearchTime() {
+		return searchTime;
+	}
+
+	public double getWinRate() {
+		// how often the side to move won the playouts through the chosen move
+		if (tree.firstChild.get(0) <= 0)
+			return 0;
+
+		int best = bestChild();
+		return tree.score.get(best) / (2.0 * Math.max(1, tree.visits.get(best)));
+	}
+
+	public void shutdown() {
+		if (pool != null)
+			pool.shutdownNow();
+	}
+
+}
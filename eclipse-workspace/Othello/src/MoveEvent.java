@@ -0,0 +1,105 @@
+/*
+ * This class describes one move of the expert computer: how it was found
+ * (from the book, the solver, the search, or a ponder search that was
+ * right), what it cost, and how well the search went. It is handed to
+ * every EngineMetrics listener after the move.
+ */
+
+public class MoveEvent {
+
+	private final String source;
+	private final int move;
+	private final long millis;
+	private final int depth;
+	private final long nodes;
+	private final long probes;
+	private final long hits;
+	private final double branchingFactor;
+	private final long firstMoveTime;
+	private final long moveGenerations;
+	private final long flips;
+	private final long evaluations;
+
+	public MoveEvent(String source, int move, long millis, int depth, long nodes, long probes, long hits,
+			double branchingFactor, long firstMoveTime, long moveGenerations, long flips, long evaluations) {
+		this.source = source;
+		this.move = move;
+		this.millis = millis;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.probes = probes;
+		this.hits = hits;
+		this.branchingFactor = branchingFactor;
+		this.firstMoveTime = firstMoveTime;
+		this.moveGenerations = moveGenerations;
+		this.flips = flips;
+		this.evaluations = evaluations;
+	}
+
+	public String getSource() {
+		// book, solver or search, after "ponder " when a ponder search found it
+		return source;
+	}
+
+	public int getMove() {
+		return move;
+	}
+
+	public long getMillis() {
+		// how long the move took, from being asked for to being answered
+		return millis;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getNodesPerSecond() {
+		return nodes * 1000 / Math.max(1, millis);
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public double getHashHitRate() {
+		// the share of table lookups that found the position, 0 without any lookups
+		return probes > 0 ? (double) hits / probes : 0;
+	}
+
+	public double getBranchingFactor() {
+		return branchingFactor;
+	}
+
+	public long getFirstMoveTime() {
+		return firstMoveTime;
+	}
+
+	public long getMoveGenerations() {
+		return moveGenerations;
+	}
+
+	public long getFlips() {
+		return flips;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("move=%s source=%s time=%dms depth=%d nodes=%d nps=%d hash=%.1f%% ebf=%.2f first=%dms",
+				Bitboard.toText(move), source, millis, depth, nodes, getNodesPerSecond(), getHashHitRate() * 100,
+				branchingFactor, firstMoveTime);
+	}
+
+}
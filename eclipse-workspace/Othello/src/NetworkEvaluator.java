@@ -0,0 +1,239 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/*
+ * This class judges positions with a small neural network in integer
+ * arithmetic. The inputs are one per square for each player, the hidden
+ * layer is clipped to between 0 and 1, and there is an output for each
+ * stage of the game, chosen by how many pieces are on the field like the
+ * PatternEvaluator's tables.
+ *
+ * The first layer's sums (the accumulator) are kept up to date as moves
+ * are made and taken back, by adding and taking away the weights of just
+ * the squares that changed, so an evaluation only has to run the hidden
+ * layer into the output. Weights are 16 bit integers: the first layer is
+ * scaled so 1 is ACTIVATION_SCALE, the output so 1 is OUTPUT_SCALE, and
+ * the output is in discs.
+ *
+ * Until trained weights are loaded, two hidden units hold the square
+ * weights of the PatternEvaluator, so the network plays like the old
+ * evaluation did. NetworkTrainer makes trained weights from game records.
+ */
+
+public class NetworkEvaluator implements Evaluator {
+
+	// the file trained weights are read from when there is one
+	public static final String WEIGHTS_FILE = "othello.net";
+
+	// a square for each player, and the units in the hidden layer
+	public static final int INPUTS = Bitboard.SQUARES * 2;
+	public static final int HIDDEN = 64;
+
+	// the stages of the game, each with its own output
+	public static final int PHASES = PatternEvaluator.PHASES;
+
+	// what 1 is in the hidden layer and in the output weights
+	public static final int ACTIVATION_SCALE = 255;
+	public static final int OUTPUT_SCALE = 64;
+
+	// what a disc is worth in the search's scores
+	public static final int DISC_VALUE = 10;
+
+	// the start of every weight file, "NNE1"
+	private static final int MAGIC = 0x4E4E4531;
+
+	// the square weights the seed holds, and the sum the hidden units can hold before they clip
+	private static final int SEED_RANGE = 640;
+
+	// the weights: each input's HIDDEN weights in a row, then by phase for the output
+	private static short[] inputWeights;
+	private static short[] hiddenBiases;
+	private static short[] outputWeights;
+	private static int[] outputBiases;
+
+	private static boolean loaded;
+
+	static {
+		seedWeights();
+	}
+
+	// the first layer's sums for the current position
+	private final int[] accumulator = new int[HIDDEN];
+
+	// the pieces on the field, for choosing the phase
+	private int discs;
+
+	@Override
+	public void setPosition(long one, long two) {
+		// works out the accumulator from scratch, only needed once per search
+		for (int i = 0; i < HIDDEN; i++)
+			accumulator[i] = hiddenBiases[i];
+
+		for (long b = one; b != 0; b &= b - 1)
+			add(input(Field.PLAYER_ONE, Long.numberOfTrailingZeros(b)));
+		for (long b = two; b != 0; b &= b - 1)
+			add(input(Field.PLAYER_TWO, Long.numberOfTrailingZeros(b)));
+		discs = Bitboard.count(one | two);
+	}
+
+	@Override
+	public void play(int player, int square, long flips) {
+		// adds the placed piece, then moves each flipped piece from the other player's inputs
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		add(input(player, square));
+		for (long b = flips; b != 0; b &= b - 1) {
+			int flipped = Long.numberOfTrailingZeros(b);
+			move(input(other, flipped), input(player, flipped));
+		}
+		discs++;
+	}
+
+	@Override
+	public void undo(int player, int square, long flips) {
+		// takes back play
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		for (long b = flips; b != 0; b &= b - 1) {
+			int flipped = Long.numberOfTrailingZeros(b);
+			move(input(player, flipped), input(other, flipped));
+		}
+		subtract(input(player, square));
+		discs--;
+	}
+
+	private static int input(int player, int square) {
+		// where the weights of a player's piece on a square start
+		return ((player - 1) * Bitboard.SQUARES + square) * HIDDEN;
+	}
+
+	private void add(int from) {
+		short[] weights = inputWeights;
+		for (int i = 0; i < HIDDEN; i++)
+			accumulator[i] += weights[from + i];
+	}
+
+	private void subtract(int from) {
+		short[] weights = inputWeights;
+		for (int i = 0; i < HIDDEN; i++)
+			accumulator[i] -= weights[from + i];
+	}
+
+	private void move(int from, int to) {
+		// takes one input away and adds another in a single pass
+		short[] weights = inputWeights;
+		for (int i = 0; i < HIDDEN; i++)
+			accumulator[i] += weights[to + i] - weights[from + i];
+	}
+
+	@Override
+	public int evaluate(int player) {
+		// judges the position from the point of view of the given player
+
+		int phase = PatternEvaluator.phase(discs);
+		short[] weights = outputWeights;
+		int offset = phase * HIDDEN;
+
+		long sum = outputBiases[phase];
+		for (int i = 0; i < HIDDEN; i++)
+			sum += Math.min(ACTIVATION_SCALE, Math.max(0, accumulator[i])) * weights[offset + i];
+
+		// the network scores for player one, and player two's score is the opposite
+		int value = (int) (sum * DISC_VALUE / (ACTIVATION_SCALE * OUTPUT_SCALE));
+		return player == Field.PLAYER_ONE ? value : -value;
+	}
+
+	private static void seedWeights() {
+		// one hidden unit goes up with the square weights of player one's pieces and down with
+		// player two's, the other the opposite way, both starting at a half so they clip evenly
+
+		inputWeights = new short[INPUTS * HIDDEN];
+		hiddenBiases = new short[HIDDEN];
+		outputWeights = new short[PHASES * HIDDEN];
+		outputBiases = new int[PHASES];
+
+		for (int square = 0; square < Bitboard.SQUARES; square++) {
+			int weight = Math.round((float) PatternEvaluator.SQUARE_WEIGHTS[square] * ACTIVATION_SCALE / SEED_RANGE);
+			inputWeights[input(Field.PLAYER_ONE, square)] = (short) weight;
+			inputWeights[input(Field.PLAYER_TWO, square)] = (short) -weight;
+			inputWeights[input(Field.PLAYER_ONE, square) + 1] = (short) -weight;
+			inputWeights[input(Field.PLAYER_TWO, square) + 1] = (short) weight;
+		}
+		hiddenBiases[0] = hiddenBiases[1] = ACTIVATION_SCALE / 2;
+
+		// the difference of the two units gives the square weights back in the search's scores
+		short output = (short) (SEED_RANGE * OUTPUT_SCALE / (2 * DISC_VALUE));
+		for (int phase = 0; phase < PHASES; phase++) {
+			outputWeights[phase * HIDDEN] = output;
+			outputWeights[phase * HIDDEN + 1] = (short) -output;
+		}
+	}
+
+	public static synchronized void loadDefaultWeights() {
+		// loads the trained weights from WEIGHTS_FILE the first time it's asked, if there are any
+		if (loaded || !new File(WEIGHTS_FILE).exists())
+			return;
+		loaded = true;
+
+		try {
+			loadWeights(WEIGHTS_FILE);
+		} catch (IOException e) {
+			System.err.println("Could not load the network weights: " + e.getMessage());
+		}
+	}
+
+	public static void loadWeights(String file) throws IOException {
+		// replaces the weights with trained ones from a file written by saveWeights
+
+		short[] input = new short[INPUTS * HIDDEN];
+		short[] hidden = new short[HIDDEN];
+		short[] output = new short[PHASES * HIDDEN];
+		int[] outputBias = new int[PHASES];
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != INPUTS || in.readInt() != HIDDEN || in.readInt() != PHASES)
+				throw new IOException(file + " does not hold weights for this network");
+
+			for (int i = 0; i < input.length; i++)
+				input[i] = in.readShort();
+			for (int i = 0; i < hidden.length; i++)
+				hidden[i] = in.readShort();
+			for (int i = 0; i < output.length; i++)
+				output[i] = in.readShort();
+			for (int i = 0; i < outputBias.length; i++)
+				outputBias[i] = in.readInt();
+		}
+
+		// meant to be loaded before searches start, a running search would mix old and new weights
+		inputWeights = input;
+		hiddenBiases = hidden;
+		outputWeights = output;
+		outputBiases = outputBias;
+	}
+
+	public static void saveWeights(String file, short[] input, short[] hidden, short[] output, int[] outputBias)
+			throws IOException {
+		// writes weights in the order loadWeights reads them
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(INPUTS);
+			out.writeInt(HIDDEN);
+			out.writeInt(PHASES);
+			for (short weight : input)
+				out.writeShort(weight);
+			for (short weight : hidden)
+				out.writeShort(weight);
+			for (short weight : output)
+				out.writeShort(weight);
+			for (int weight : outputBias)
+				out.writeInt(weight);
+		}
+	}
+
+}
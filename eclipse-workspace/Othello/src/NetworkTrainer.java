@@ -0,0 +1,249 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * This class trains the weights of the NetworkEvaluator from the records
+ * a tournament writes, or the shards a DataGenerator writes (files ending
+ * in .bin). Every position of a record is taught the final disc
+ * difference of its game, and a shard's positions come with their
+ * labels. Each position is shown in one of its 8 orientations picked at
+ * random each time it is seen. Training is done with plain floats and
+ * stochastic gradient descent, and the weights are rounded to integers
+ * only when they are saved. A tenth of the games (or of a shard's
+ * positions) are held back to show how well the network does on
+ * positions it wasn't trained on.
+ *
+ * Usage: java NetworkTrainer <weights file> <epochs> <record or shard file>...
+ */
+
+public class NetworkTrainer {
+
+	private static final int INPUTS = NetworkEvaluator.INPUTS;
+	private static final int HIDDEN = NetworkEvaluator.HIDDEN;
+	private static final int PHASES = NetworkEvaluator.PHASES;
+
+	// the output is trained in units of the whole board, so it stays near 1
+	private static final float TARGET_SCALE = Bitboard.SQUARES;
+
+	// how far each position moves the weights
+	private static final float LEARNING_RATE = 0.002f;
+
+	// how big the weights start out
+	private static final float START_RANGE = 0.1f;
+
+	// every tenth game is held back
+	private static final int HOLD_OUT = 10;
+
+	private static final long SEED = 20200327;
+
+	private final float[] inputWeights = new float[INPUTS * HIDDEN];
+	private final float[] hiddenBiases = new float[HIDDEN];
+	private final float[] outputWeights = new float[PHASES * HIDDEN];
+	private final float[] outputBiases = new float[PHASES];
+
+	// the working values of one position
+	private final int[] inputs = new int[Bitboard.SQUARES];
+	private final float[] sums = new float[HIDDEN];
+	private final float[] activations = new float[HIDDEN];
+
+	private final Random random = new Random(SEED);
+
+	public NetworkTrainer() {
+		for (int i = 0; i < inputWeights.length; i++)
+			inputWeights[i] = (random.nextFloat() * 2 - 1) * START_RANGE;
+		for (int i = 0; i < HIDDEN; i++)
+			hiddenBiases[i] = 0.5f;
+		for (int i = 0; i < outputWeights.length; i++)
+			outputWeights[i] = (random.nextFloat() * 2 - 1) * START_RANGE;
+	}
+
+	public static List<long[]> readRecords(String file, List<long[]> heldOut) throws IOException {
+		// replays every game and gives its positions as { player one's pieces, player two's, result },
+		// the result being player one's pieces minus player two's at the end
+
+		List<long[]> positions = new ArrayList<>();
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			for (int game = 0; (line = reader.readLine()) != null; game++) {
+
+				String[] parts = line.trim().split(" ");
+				if (parts.length != 2)
+					continue;
+				String moves = parts[0];
+				long difference = Integer.parseInt(parts[1]);
+				List<long[]> into = heldOut != null && game % HOLD_OUT == HOLD_OUT - 1 ? heldOut : positions;
+
+				long own = Bitboard.START_ONE, opp = Bitboard.START_TWO;
+				int player = Field.PLAYER_ONE;
+
+				for (int ply = 0; ply * 2 < moves.length(); ply++) {
+
+					// a player with no moves passes
+					if (Bitboard.legalMoves(own, opp) == 0) {
+						long swap = own;
+						own = opp;
+						opp = swap;
+						player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+					}
+
+					if (player == Field.PLAYER_ONE)
+						into.add(new long[] { own, opp, difference });
+					else
+						into.add(new long[] { opp, own, difference });
+
+					int move = Bitboard.fromText(moves.substring(ply * 2, ply * 2 + 2));
+					long flips = Bitboard.flips(own, opp, move);
+					long next = own | flips | (1L << move);
+					own = opp & ~flips;
+					opp = next;
+					player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+				}
+			}
+		}
+
+		return positions;
+	}
+
+	public static List<long[]> readShard(String file, List<long[]> heldOut) throws IOException {
+		// the positions of a shard as readRecords gives them
+		List<long[]> positions = new ArrayList<>();
+		List<long[]> shard = DataGenerator.readShard(file);
+		for (int i = 0; i < shard.size(); i++)
+			(heldOut != null && i % HOLD_OUT == HOLD_OUT - 1 ? heldOut : positions).add(shard.get(i));
+		return positions;
+	}
+
+	public void train(List<long[]> positions) {
+		// one pass over the positions in a random order
+
+		for (int i = positions.size() - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			long[] swap = positions.get(i);
+			positions.set(i, positions.get(j));
+			positions.set(j, swap);
+		}
+
+		for (long[] position : positions) {
+			int symmetry = random.nextInt(8);
+			int count = setInputs(Bitboard.transform(position[0], symmetry), Bitboard.transform(position[1], symmetry));
+			int phase = PatternEvaluator.phase(count);
+
+			float error = forward(count, phase) - position[2] / TARGET_SCALE;
+			backward(count, phase, error);
+		}
+	}
+
+	public double error(List<long[]> positions) {
+		// the root mean square error in discs
+		double total = 0;
+		for (long[] position : positions) {
+			int count = setInputs(position[0], position[1]);
+			int phase = PatternEvaluator.phase(count);
+			double error = forward(count, phase) * TARGET_SCALE - position[2];
+			total += error * error;
+		}
+		return Math.sqrt(total / Math.max(1, positions.size()));
+	}
+
+	private int setInputs(long one, long two) {
+		// lists the inputs that are on, giving how many there are
+		int count = 0;
+		for (long b = one; b != 0; b &= b - 1)
+			inputs[count++] = Long.numberOfTrailingZeros(b) * HIDDEN;
+		for (long b = two; b != 0; b &= b - 1)
+			inputs[count++] = (Bitboard.SQUARES + Long.numberOfTrailingZeros(b)) * HIDDEN;
+		return count;
+	}
+
+	private float forward(int count, int phase) {
+		// the network's output for the inputs that are on, in units of TARGET_SCALE
+
+		System.arraycopy(hiddenBiases, 0, sums, 0, HIDDEN);
+		for (int n = 0; n < count; n++)
+			for (int i = 0, from = inputs[n]; i < HIDDEN; i++)
+				sums[i] += inputWeights[from + i];
+
+		float output = outputBiases[phase];
+		for (int i = 0; i < HIDDEN; i++) {
+			activations[i] = Math.min(1, Math.max(0, sums[i]));
+			output += activations[i] * outputWeights[phase * HIDDEN + i];
+		}
+		return output;
+	}
+
+	private void backward(int count, int phase, float error) {
+		// moves every weight that was used against its share of the error
+
+		float step = LEARNING_RATE * error;
+		for (int i = 0; i < HIDDEN; i++) {
+			int output = phase * HIDDEN + i;
+
+			// a clipped unit passes nothing back
+			float hidden = sums[i] > 0 && sums[i] < 1 ? step * outputWeights[output] : 0;
+			outputWeights[output] -= step * activations[i];
+
+			if (hidden != 0) {
+				hiddenBiases[i] -= hidden;
+				for (int n = 0; n < count; n++)
+					inputWeights[inputs[n] + i] -= hidden;
+			}
+		}
+		outputBiases[phase] -= step;
+	}
+
+	public void save(String file) throws IOException {
+		// rounds the weights to the integers NetworkEvaluator works in
+
+		float activation = NetworkEvaluator.ACTIVATION_SCALE;
+		float output = NetworkEvaluator.OUTPUT_SCALE * TARGET_SCALE;
+
+		short[] input = new short[inputWeights.length];
+		for (int i = 0; i < input.length; i++)
+			input[i] = quantize(inputWeights[i] * activation);
+		short[] hidden = new short[HIDDEN];
+		for (int i = 0; i < HIDDEN; i++)
+			hidden[i] = quantize(hiddenBiases[i] * activation);
+		short[] outputs = new short[outputWeights.length];
+		for (int i = 0; i < outputs.length; i++)
+			outputs[i] = quantize(outputWeights[i] * output);
+		int[] outputBias = new int[PHASES];
+		for (int i = 0; i < PHASES; i++)
+			outputBias[i] = Math.round(outputBiases[i] * output * activation);
+
+		NetworkEvaluator.saveWeights(file, input, hidden, outputs, outputBias);
+	}
+
+	private static short quantize(float value) {
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 3) {
+			System.out.println("Usage: java NetworkTrainer <weights file> <epochs> <record or shard file>...");
+			return;
+		}
+
+		int epochs = Integer.parseInt(args[1]);
+		List<long[]> positions = new ArrayList<>(), heldOut = new ArrayList<>();
+		for (int i = 2; i < args.length; i++)
+			positions.addAll(args[i].endsWith(".bin") ? readShard(args[i], heldOut) : readRecords(args[i], heldOut));
+		System.out.println("Training on " + positions.size() + " positions, holding back " + heldOut.size());
+
+		NetworkTrainer trainer = new NetworkTrainer();
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			trainer.train(positions);
+			System.out.printf("Epoch %d: error %.2f discs, held back %.2f discs%n", epoch,
+					trainer.error(positions), trainer.error(heldOut));
+		}
+
+		trainer.save(args[0]);
+		System.out.println("Wrote the weights to " + args[0]);
+	}
+
+}
@@ -0,0 +1,227 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class answers opening moves from a book instead of searching. The
+ * book file is a sorted list of position keys, each with the best move,
+ * and it is memory mapped so it never has to be read onto the heap. A
+ * position is looked up by binary search.
+ *
+ * Each position is turned into whichever of its 8 rotations and
+ * reflections has the smallest key before it is stored or looked up, so
+ * one entry covers all of them and the file stays small.
+ *
+ * The book is built from the records a tournament writes:
+ * java OpeningBook <record file> <book file> [plies] [minimum games]
+ */
+
+public class OpeningBook {
+
+	// the start of every book file, "OBK1"
+	private static final int MAGIC = 0x4F424B31;
+
+	// the header is the magic number and the number of entries
+	private static final int HEADER_BYTES = 8;
+
+	// each entry is a key and a move
+	private static final int ENTRY_BYTES = 9;
+
+	// defaults for building a book
+	private static final int DEFAULT_PLIES = 20;
+	private static final int DEFAULT_MINIMUM_GAMES = 2;
+
+	// the mapped file and how many entries it holds
+	private MappedByteBuffer buffer;
+	private int entries;
+
+	public OpeningBook(String file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException(file + " is not an opening book");
+
+		entries = buffer.getInt(4);
+		if (buffer.limit() < HEADER_BYTES + (long) entries * ENTRY_BYTES)
+			throw new IOException(file + " is cut short");
+	}
+
+	public int lookup(long own, long opp) {
+		// gives the book move for the player owning own, or -1 if the position isn't in the book
+
+		int symmetry = canonicalSymmetry(own, opp);
+		long key = key(Bitboard.transform(own, symmetry), Bitboard.transform(opp, symmetry));
+
+		// binary search the sorted keys
+		int low = 0, high = entries - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long found = buffer.getLong(HEADER_BYTES + middle * ENTRY_BYTES);
+
+			if (found < key)
+				low = middle + 1;
+			else if (found > key)
+				high = middle - 1;
+			else {
+
+				// turn the stored move back into this position's orientation
+				int move = buffer.get(HEADER_BYTES + middle * ENTRY_BYTES + 8);
+				for (int square = 0; square < Bitboard.SQUARES; square++)
+					if (Bitboard.transformSquare(square, symmetry) == move)
+						return (Bitboard.legalMoves(own, opp) & (1L << square)) != 0 ? square : -1;
+				return -1;
+			}
+		}
+
+		return -1;
+	}
+
+	public int size() {
+		return entries;
+	}
+
+	static long key(long own, long opp) {
+		// mixes both bitboards into one key (the finalizer of splitmix64)
+		long key = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opp, 32) * 0xC2B2AE3D27D4EB4FL;
+		key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+		key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+		return key ^ (key >>> 31);
+	}
+
+	static int canonicalSymmetry(long own, long opp) {
+		// finds the symmetry giving the smallest key, the same for every rotation and reflection
+		int best = 0;
+		long bestKey = key(own, opp);
+
+		for (int symmetry = 1; symmetry < 8; symmetry++) {
+			long key = key(Bitboard.transform(own, symmetry), Bitboard.transform(opp, symmetry));
+			if (key < bestKey) {
+				bestKey = key;
+				best = symmetry;
+			}
+		}
+
+		return best;
+	}
+
+	public static void build(String recordFile, String bookFile, int plies, int minimumGames)
+			throws IOException {
+		// builds a book from game records, keeping for every position seen in at least
+		// minimumGames games the move with the best average result for the player to move
+
+		// the games and total result of each move from each position (key, then move)
+		Map<Long, Map<Integer, long[]>> positions = new HashMap<>();
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(recordFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+
+				String[] parts = line.trim().split(" ");
+				if (parts.length != 2)
+					continue;
+				String moves = parts[0];
+				int difference = Integer.parseInt(parts[1]);
+
+				long own = Bitboard.START_ONE, opp = Bitboard.START_TWO;
+				int player = Field.PLAYER_ONE;
+
+				for (int ply = 0; ply < plies && ply * 2 < moves.length(); ply++) {
+
+					// a player with no moves passes
+					if (Bitboard.legalMoves(own, opp) == 0) {
+						long swap = own;
+						own = opp;
+						opp = swap;
+						player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+					}
+
+					int move = Bitboard.fromText(moves.substring(ply * 2, ply * 2 + 2));
+
+					// count the result for the player to move under the position's canonical key
+					int symmetry = canonicalSymmetry(own, opp);
+					long key = key(Bitboard.transform(own, symmetry), Bitboard.transform(opp, symmetry));
+					int result = player == Field.PLAYER_ONE ? difference : -difference;
+
+					long[] stats = positions.computeIfAbsent(key, k -> new HashMap<>())
+							.computeIfAbsent(Bitboard.transformSquare(move, symmetry), m -> new long[2]);
+					stats[0]++;
+					stats[1] += result;
+
+					long flips = Bitboard.flips(own, opp, move);
+					long next = own | flips | (1L << move);
+					own = opp & ~flips;
+					opp = next;
+					player = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+				}
+			}
+		}
+
+		// pick the best move of every position that was seen often enough
+		List<long[]> book = new ArrayList<>();
+		for (Map.Entry<Long, Map<Integer, long[]>> position : positions.entrySet()) {
+
+			long games = 0;
+			int bestMove = -1;
+			double bestAverage = 0;
+
+			for (Map.Entry<Integer, long[]> move : position.getValue().entrySet()) {
+				long[] stats = move.getValue();
+				double average = (double) stats[1] / stats[0];
+				games += stats[0];
+
+				if (bestMove == -1 || average > bestAverage) {
+					bestMove = move.getKey();
+					bestAverage = average;
+				}
+			}
+
+			if (games >= minimumGames)
+				book.add(new long[] { position.getKey(), bestMove });
+		}
+
+		// write the entries sorted by key
+		Collections.sort(book, (a, b) -> Long.compare(a[0], b[0]));
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(bookFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(book.size());
+			for (long[] entry : book) {
+				out.writeLong(entry[0]);
+				out.writeByte((int) entry[1]);
+			}
+		}
+
+		System.out.println("Wrote " + book.size() + " positions to " + bookFile);
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java OpeningBook <record file> <book file> [plies] [minimum games]");
+			return;
+		}
+
+		int plies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+		int minimumGames = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MINIMUM_GAMES;
+		build(args[0], args[1], plies, minimumGames);
+	}
+
+}
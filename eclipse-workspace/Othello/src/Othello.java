@@ -8,13 +8,24 @@ import java.util.Scanner;
  */
 
 public class Othello {
+	
+	// the one scanner for input, shared by every question so nothing typed ahead is lost
+	static final Scanner INPUT = new Scanner(System.in);
 
 	public static void main(String[] args) {
 		
+		System.out.println("Welcome to Othello!\n");
+		
+		// the field is usually 8x8, but can be any even size from 4 to 16
+		String[] sizes = new String[(VariantBoard.MAX_SIZE - VariantBoard.MIN_SIZE) / 2 + 1];
+		for (int i = 0; i < sizes.length; i++)
+			sizes[i] = String.valueOf(VariantBoard.MIN_SIZE + i * 2);
+		String size = getInput("How big is the field? (" + String.join(", ", sizes) + ") ", sizes);
+		
 		// initialize field
-		Field field = new Field();
+		Field field = new Field(Integer.parseInt(size));
 		
-		System.out.println("Welcome to Othello!\n\nHere is the starting field. "
+		System.out.println("Here is the starting field. "
 				+ "Black 0's represents player one's pieces,\n"
 				+ "and White 0's represent player two's pieces.\n");
 		
@@ -41,7 +52,7 @@ public class Othello {
 		String s;
 		
 		// Scanner for input
-		Scanner input = new Scanner(System.in);
+		Scanner input = INPUT;
 		
 		while(true) {
 			System.out.print(prompt);
@@ -66,7 +77,7 @@ public class Othello {
 		String s;
 		
 		// Scanner for input
-		Scanner input = new Scanner(System.in);
+		Scanner input = INPUT;
 		
 		while(true) {
 			System.out.print(prompt + "(y or n) ");
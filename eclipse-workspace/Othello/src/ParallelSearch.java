@@ -0,0 +1,208 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This class runs the search on several threads at once (lazy SMP).
+ * Every thread searches the same position with its own Search, and they
+ * only share the transposition table, so each thread finds the results
+ * of the others already waiting in it. The main thread's move is the one
+ * that is played, and the helpers are stopped as soon as it is done.
+ */
+
+public class ParallelSearch {
+
+	// the table every thread shares, aged once per move
+	private TranspositionTable table;
+
+	// the search whose move is used, and the helpers that fill the table for it
+	private Search main;
+	private Search[] helpers;
+
+	// runs the helpers, the main search runs on the calling thread
+	private ExecutorService pool;
+
+	// results of the last search, added up over every thread
+	private long nodes;
+	private long moveGenerations;
+	private long flips;
+	private long evaluations;
+	private long probes;
+	private long hits;
+
+	public ParallelSearch(TranspositionTable table, int threads, int maxDepth,
+			long nodeLimit, long timeLimit) {
+
+		this.table = table;
+		main = new Search(table, maxDepth, nodeLimit, timeLimit);
+		helpers = new Search[Math.max(0, threads - 1)];
+
+		for (int i = 0; i < helpers.length; i++) {
+
+			// helpers stop with the main search, so they don't need limits of their own
+			helpers[i] = new Search(table, maxDepth, 0);
+
+			// starting every other helper one ply deeper spreads the threads across depths
+			helpers[i].setStartDepth(1 + (i + 1) % 2);
+		}
+
+		if (helpers.length > 0)
+			pool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+				Thread thread = new Thread(runnable, "search-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+
+	public int findMove(long own, long opp, int player) {
+		long hash = player == Field.PLAYER_ONE ? Zobrist.hash(own, opp, player)
+				: Zobrist.hash(opp, own, player);
+		return findMove(own, opp, hash, player);
+	}
+
+	public int findMove(long own, long opp, long hash, int player) {
+		// gives the best square for the player owning own, or -1 if there are no moves
+
+		// the table is aged here once, not by each thread
+		table.newSearch();
+
+		// start the helpers
+		Future<?>[] running = new Future<?>[helpers.length];
+		for (int i = 0; i < helpers.length; i++) {
+			Search helper = helpers[i];
+			helper.resume();
+			running[i] = pool.submit(() -> helper.search(own, opp, hash, player));
+		}
+
+		// search on this thread until the limits are reached
+		int move = main.search(own, opp, hash, player);
+
+		// then stop the helpers and wait for them
+		for (Search helper : helpers)
+			helper.abort();
+
+		nodes = moveGenerations = flips = evaluations = probes = hits = 0;
+		add(main);
+		for (int i = 0; i < helpers.length; i++) {
+			try {
+				running[i].get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			add(helpers[i]);
+		}
+
+		return move;
+	}
+
+	private void add(Search search) {
+		nodes += search.getNodes();
+		moveGenerations += search.getMoveGenerations();
+		flips += search.getFlips();
+		evaluations += search.getEvaluations();
+		probes += search.getProbes();
+		hits += search.getHits();
+	}
+
+	public long getNodes() {
+		// the nodes searched by every thread together
+		return nodes;
+	}
+
+	public long getMoveGenerations() {
+		return moveGenerations;
+	}
+
+	public long getFlips() {
+		return flips;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public double getBranchingFactor() {
+		return main.getBranchingFactor();
+	}
+
+	public long getFirstMoveTime() {
+		return main.getFirstMoveTime();
+	}
+
+	public int getDepth() {
+		return main.getDepth();
+	}
+
+	public int getScore() {
+		return main.getScore();
+	}
+
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+
+	public void setCache(AnalysisCache cache) {
+		// every thread reads and adds to the same cache
+		main.setCache(cache);
+		for (Search helper : helpers)
+			helper.setCache(cache);
+	}
+
+	public void setTimeLimit(long timeLimit) {
+		// the helpers stop with the main search, so only it needs the limit
+		main.setTimeLimit(timeLimit);
+	}
+
+	public void abort() {
+		// stops a running search from another thread, it returns its best move so far
+		main.abort();
+	}
+
+	public void resume() {
+		// lets searches run again after abort, the helpers are resumed by every search
+		main.resume();
+	}
+
+	public void shutdown() {
+		if (pool != null)
+			pool.shutdownNow();
+	}
+
+	public static void main(String[] args) {
+		// measures nodes per second from the starting position with more and more threads
+
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("threads  nodes/second  speedup");
+		double single = 0;
+
+		for (int count = 1; ; count *= 2) {
+
+			// double the threads each time, ending with every core
+			int threads = Math.min(count, cores);
+			ParallelSearch search = new ParallelSearch(new TranspositionTable(64), threads, 60, 0, millis);
+
+			long start = System.nanoTime();
+			search.findMove(Bitboard.START_ONE, Bitboard.START_TWO, Field.PLAYER_ONE);
+			double nps = search.getNodes() / ((System.nanoTime() - start) / 1e9);
+			search.shutdown();
+
+			if (threads == 1)
+				single = nps;
+			System.out.printf("%7d  %12.0f  %7.2f%n", threads, nps, nps / single);
+
+			if (threads == cores)
+				break;
+		}
+	}
+
+}
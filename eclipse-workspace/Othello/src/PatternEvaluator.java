@@ -0,0 +1,310 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * This class judges positions by looking up groups of squares (patterns)
+ * in weight tables. The patterns are the edges, the corners, the rows
+ * and columns in from the edges, and the diagonals, each in every
+ * rotation and reflection. The squares of a pattern read as a number in
+ * base 3 (empty, player one, player two) give its index into a short
+ * table, and there is a table for each stage of the game, chosen by how
+ * many pieces are on the field.
+ *
+ * The indices are kept up to date as pieces are placed and flipped, so
+ * an evaluation is one lookup per pattern instead of a scan of the
+ * field. Until trained tables are loaded, the tables hold the square
+ * weights the search used before, split over the patterns, with extra
+ * value for edge pieces that can't be flipped any more.
+ */
+
+public class PatternEvaluator implements Evaluator {
+
+	// the stages of the game, each with its own tables
+	public static final int PHASES = 6;
+
+	// the start of every weight file, "PEV1"
+	private static final int MAGIC = 0x50455631;
+
+	// value of owning each square, corners are good and the squares next to them are bad
+	static final int[] SQUARE_WEIGHTS = {
+			100, -20, 10,  5,  5, 10, -20, 100,
+			-20, -50, -2, -2, -2, -2, -50, -20,
+			 10,  -2, -1, -1, -1, -1,  -2,  10,
+			  5,  -2, -1, -1, -1, -1,  -2,   5,
+			  5,  -2, -1, -1, -1, -1,  -2,   5,
+			 10,  -2, -1, -1, -1, -1,  -2,  10,
+			-20, -50, -2, -2, -2, -2, -50, -20,
+			100, -20, 10,  5,  5, 10, -20, 100
+	};
+
+	// value of an edge piece that can no longer be flipped
+	private static final int STABLE_WEIGHT = 15;
+
+	// value of a square next to a corner once the corner is taken
+	private static final int TAKEN_CORNER_WEIGHT = 5;
+
+	// the squares of each kind of pattern as (x, y) pairs, in one orientation
+	private static final int[][][] SHAPES = {
+			// the edge
+			{ { 0, 0 }, { 1, 0 }, { 2, 0 }, { 3, 0 }, { 4, 0 }, { 5, 0 }, { 6, 0 }, { 7, 0 } },
+			// the 3x3 corner
+			{ { 0, 0 }, { 1, 0 }, { 2, 0 }, { 0, 1 }, { 1, 1 }, { 2, 1 }, { 0, 2 }, { 1, 2 }, { 2, 2 } },
+			// the 5x2 corner
+			{ { 0, 0 }, { 1, 0 }, { 2, 0 }, { 3, 0 }, { 4, 0 }, { 0, 1 }, { 1, 1 }, { 2, 1 }, { 3, 1 }, { 4, 1 } },
+			// the rows one, two and three in from the edge
+			{ { 0, 1 }, { 1, 1 }, { 2, 1 }, { 3, 1 }, { 4, 1 }, { 5, 1 }, { 6, 1 }, { 7, 1 } },
+			{ { 0, 2 }, { 1, 2 }, { 2, 2 }, { 3, 2 }, { 4, 2 }, { 5, 2 }, { 6, 2 }, { 7, 2 } },
+			{ { 0, 3 }, { 1, 3 }, { 2, 3 }, { 3, 3 }, { 4, 3 }, { 5, 3 }, { 6, 3 }, { 7, 3 } },
+			// the diagonals, longest first
+			{ { 0, 0 }, { 1, 1 }, { 2, 2 }, { 3, 3 }, { 4, 4 }, { 5, 5 }, { 6, 6 }, { 7, 7 } },
+			{ { 0, 1 }, { 1, 2 }, { 2, 3 }, { 3, 4 }, { 4, 5 }, { 5, 6 }, { 6, 7 } },
+			{ { 0, 2 }, { 1, 3 }, { 2, 4 }, { 3, 5 }, { 4, 6 }, { 5, 7 } },
+			{ { 0, 3 }, { 1, 4 }, { 2, 5 }, { 3, 6 }, { 4, 7 } },
+			{ { 0, 4 }, { 1, 5 }, { 2, 6 }, { 3, 7 } }
+	};
+
+	// the kinds of pattern that get the edge and corner seeds
+	private static final int EDGE = 0;
+	private static final int CORNER = 1;
+
+	// every pattern on the field: its kind and its squares
+	private static final int[] KINDS;
+	private static final int[][] SQUARES;
+
+	// for each square, the patterns it is in and the power of 3 it adds to their index
+	private static final int[][] SQUARE_PATTERNS;
+	private static final int[][] SQUARE_POWERS;
+
+	// the weights, by phase, then kind, then index
+	private static short[][][] weights;
+
+	static {
+
+		// place every kind of pattern in each of the 8 orientations, skipping repeats
+		List<int[]> squares = new ArrayList<>();
+		List<Integer> kinds = new ArrayList<>();
+		for (int kind = 0; kind < SHAPES.length; kind++) {
+			List<String> seen = new ArrayList<>();
+			for (int symmetry = 0; symmetry < 8; symmetry++) {
+				int[] pattern = new int[SHAPES[kind].length];
+				for (int i = 0; i < pattern.length; i++)
+					pattern[i] = Bitboard.transformSquare(
+							Bitboard.index(SHAPES[kind][i][0], SHAPES[kind][i][1]), symmetry);
+
+				int[] sorted = pattern.clone();
+				Arrays.sort(sorted);
+				if (seen.contains(Arrays.toString(sorted)))
+					continue;
+				seen.add(Arrays.toString(sorted));
+
+				squares.add(pattern);
+				kinds.add(kind);
+			}
+		}
+
+		SQUARES = squares.toArray(new int[0][]);
+		KINDS = new int[kinds.size()];
+		for (int i = 0; i < KINDS.length; i++)
+			KINDS[i] = kinds.get(i);
+
+		// list the patterns each square is in
+		int[] counts = new int[Bitboard.SQUARES];
+		for (int[] pattern : SQUARES)
+			for (int square : pattern)
+				counts[square]++;
+
+		SQUARE_PATTERNS = new int[Bitboard.SQUARES][];
+		SQUARE_POWERS = new int[Bitboard.SQUARES][];
+		for (int square = 0; square < Bitboard.SQUARES; square++) {
+			SQUARE_PATTERNS[square] = new int[counts[square]];
+			SQUARE_POWERS[square] = new int[counts[square]];
+			counts[square] = 0;
+		}
+		for (int p = 0; p < SQUARES.length; p++)
+			for (int i = 0, power = 1; i < SQUARES[p].length; i++, power *= 3) {
+				int square = SQUARES[p][i];
+				SQUARE_PATTERNS[square][counts[square]] = p;
+				SQUARE_POWERS[square][counts[square]++] = power;
+			}
+
+		weights = seedWeights(counts);
+	}
+
+	// the index of every pattern for the current position
+	private final int[] indices = new int[SQUARES.length];
+
+	// the pieces on the field, for choosing the phase
+	private int discs;
+
+	@Override
+	public void setPosition(long one, long two) {
+		// works out every index from scratch, only needed once per search
+		Arrays.fill(indices, 0);
+		discs = 0;
+
+		for (long b = one; b != 0; b &= b - 1)
+			place(Field.PLAYER_ONE, Long.numberOfTrailingZeros(b));
+		for (long b = two; b != 0; b &= b - 1)
+			place(Field.PLAYER_TWO, Long.numberOfTrailingZeros(b));
+	}
+
+	@Override
+	public void play(int player, int square, long flips) {
+		// updates the indices for a move: the placed piece, then each flipped one
+		place(player, square);
+
+		int change = player == Field.PLAYER_ONE ? -1 : 1;
+		for (long b = flips; b != 0; b &= b - 1)
+			change(Long.numberOfTrailingZeros(b), change);
+	}
+
+	@Override
+	public void undo(int player, int square, long flips) {
+		// takes back play
+		int change = player == Field.PLAYER_ONE ? 1 : -1;
+		for (long b = flips; b != 0; b &= b - 1)
+			change(Long.numberOfTrailingZeros(b), change);
+
+		change(square, -player);
+		discs--;
+	}
+
+	private void place(int player, int square) {
+		// an empty square (0) becomes the player's (1 or 2)
+		change(square, player);
+		discs++;
+	}
+
+	private void change(int square, int change) {
+		// adds the change of one square to every pattern it is in
+		int[] patterns = SQUARE_PATTERNS[square];
+		int[] powers = SQUARE_POWERS[square];
+		for (int i = 0; i < patterns.length; i++)
+			indices[patterns[i]] += change * powers[i];
+	}
+
+	@Override
+	public int evaluate(int player) {
+		// judges the position from the point of view of the given player
+
+		short[][] tables = weights[phase(discs)];
+		int value = 0;
+		for (int p = 0; p < indices.length; p++)
+			value += tables[KINDS[p]][indices[p]];
+
+		// the tables score for player one, and player two's score is the opposite
+		return player == Field.PLAYER_ONE ? value : -value;
+	}
+
+	public static int phase(int discs) {
+		// the stage of the game, from 0 at the start to PHASES - 1 at the end
+		return Math.min(PHASES - 1, (discs - 4) * PHASES / (Bitboard.SQUARES - 3));
+	}
+
+	private static short[][][] seedWeights(int[] coverage) {
+		// fills the tables from the square weights, split evenly over the patterns
+		// each square is in, with edge stability and taken corners on top
+
+		short[][][] seeds = new short[PHASES][SHAPES.length][];
+
+		for (int phase = 0; phase < PHASES; phase++)
+			for (int kind = 0; kind < SHAPES.length; kind++) {
+
+				int length = SHAPES[kind].length;
+				int size = (int) Math.pow(3, length);
+				seeds[phase][kind] = new short[size];
+				int[] states = new int[length];
+				int[] squares = new int[length];
+				for (int i = 0; i < length; i++)
+					squares[i] = Bitboard.index(SHAPES[kind][i][0], SHAPES[kind][i][1]);
+
+				for (int index = 0; index < size; index++) {
+
+					// read the state of each square from the index
+					for (int i = 0, rest = index; i < length; i++, rest /= 3)
+						states[i] = rest % 3;
+
+					double value = 0;
+					for (int i = 0; i < length; i++) {
+						if (states[i] == 0)
+							continue;
+
+						int weight = SQUARE_WEIGHTS[squares[i]];
+
+						// next to a taken corner, a square is no longer a risk
+						if (kind == CORNER && weight < 0 && states[0] != 0)
+							weight = TAKEN_CORNER_WEIGHT;
+
+						// near the end of the game, every piece counts for a little more
+						double square = weight + Math.max(0, phase - 3) * 2;
+						value += sign(states[i]) * square / coverage[squares[i]];
+					}
+
+					// edge pieces in a line from a corner can't be flipped
+					if (kind == EDGE)
+						value += STABLE_WEIGHT * (stableRun(states, 0, 1) + stableRun(states, length - 1, -1));
+
+					seeds[phase][kind][index] = (short) Math.max(Short.MIN_VALUE,
+							Math.min(Short.MAX_VALUE, Math.round(value)));
+				}
+			}
+
+		return seeds;
+	}
+
+	private static int stableRun(int[] states, int start, int step) {
+		// counts the pieces of one color in a row from a corner, plus for player one
+		if (states[start] == 0)
+			return 0;
+
+		int count = 0;
+		for (int i = start; i >= 0 && i < states.length && states[i] == states[start]; i += step)
+			count++;
+		return sign(states[start]) * count;
+	}
+
+	private static int sign(int state) {
+		return state == Field.PLAYER_ONE ? 1 : -1;
+	}
+
+	public static void loadWeights(String file) throws IOException {
+		// replaces the tables with trained ones from a file written by saveWeights
+
+		short[][][] loaded = new short[PHASES][SHAPES.length][];
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != PHASES || in.readInt() != SHAPES.length)
+				throw new IOException(file + " does not hold pattern weights for these patterns");
+
+			for (int phase = 0; phase < PHASES; phase++)
+				for (int kind = 0; kind < SHAPES.length; kind++) {
+					loaded[phase][kind] = new short[weights[phase][kind].length];
+					for (int i = 0; i < loaded[phase][kind].length; i++)
+						loaded[phase][kind][i] = in.readShort();
+				}
+		}
+
+		weights = loaded;
+	}
+
+	public static void saveWeights(String file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(PHASES);
+			out.writeInt(SHAPES.length);
+			for (short[][] phase : weights)
+				for (short[] table : phase)
+					for (short weight : table)
+						out.writeShort(weight);
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+import java.awt.Point;
+import java.util.ArrayList;
+
+/*
+ * This class counts the positions reached after a number of moves from
+ * the starting field (perft), to check the move generator against the
+ * published counts and to measure how fast it is. A player with no legal
+ * moves passes, which counts as a move, and a finished game counts as a
+ * single position however many moves are left.
+ *
+ * Usage: java Perft <depth> [field | make]
+ * With "field", the count goes through the field's own getLegalPoints,
+ * getFlippedPoints and flipPieces instead of the raw bitboards, so both
+ * can be checked against each other. With "make", it goes through the
+ * field's makeMove and unmakeMove.
+ */
+
+public class Perft {
+
+	// published counts from the starting position, indexed by depth
+	private static final long[] KNOWN = {
+			1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+			24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L
+	};
+
+	public static long perft(long own, long opp, int depth, boolean passed) {
+		// counts the positions depth moves after this one, for the player owning own to move
+
+		if (depth == 0)
+			return 1;
+
+		long moves = Bitboard.legalMoves(own, opp);
+
+		if (moves == 0) {
+
+			// a finished game is one position
+			if (passed)
+				return 1;
+
+			// otherwise pass the turn
+			return perft(opp, own, depth - 1, true);
+		}
+
+		// one move away, each legal move is one position
+		if (depth == 1)
+			return Bitboard.count(moves);
+
+		long count = 0;
+		for (; moves != 0; moves &= moves - 1) {
+			int move = Long.numberOfTrailingZeros(moves);
+			long flips = Bitboard.flips(own, opp, move);
+			count += perft(opp & ~flips, own | flips | (1L << move), depth - 1, false);
+		}
+
+		return count;
+	}
+
+	static long perftField(Field field, long one, long two, int player, int depth, boolean passed) {
+		// counts the same positions as perft, but with the field's own methods
+
+		if (depth == 0)
+			return 1;
+
+		int otherPlayer = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+		field.setPosition(one, two, player);
+		ArrayList<Point> legalPoints = field.getLegalPoints();
+
+		if (legalPoints.size() == 0) {
+			if (passed)
+				return 1;
+			return perftField(field, one, two, otherPlayer, depth - 1, true);
+		}
+
+		long count = 0;
+		for (Point p : legalPoints) {
+
+			// place the piece and flip the pieces it captures, like a real move
+			long square = Bitboard.square(p.x, p.y);
+			if (player == Field.PLAYER_ONE)
+				field.setPosition(one | square, two, player);
+			else
+				field.setPosition(one, two | square, player);
+			field.flipPieces(field.getFlippedPoints(p));
+
+			count += perftField(field, field.getPieces(Field.PLAYER_ONE),
+					field.getPieces(Field.PLAYER_TWO), otherPlayer, depth - 1, false);
+		}
+
+		return count;
+	}
+
+	static long perftMake(Field field, int depth, boolean passed) {
+		// counts the same positions as perft, making and taking back moves on one field
+
+		if (depth == 0)
+			return 1;
+
+		long moves = field.getLegalMoves();
+
+		if (moves == 0) {
+			if (passed)
+				return 1;
+			field.makeMove(Field.PASS);
+			long count = perftMake(field, depth - 1, true);
+			field.unmakeMove(Field.PASS, 0);
+			return count;
+		}
+
+		if (depth == 1)
+			return Bitboard.count(moves);
+
+		long count = 0;
+		for (; moves != 0; moves &= moves - 1) {
+			int move = Long.numberOfTrailingZeros(moves);
+			long flips = field.makeMove(move);
+			count += perftMake(field, depth - 1, false);
+			field.unmakeMove(move, flips);
+		}
+
+		return count;
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 1) {
+			System.out.println("Usage: java Perft <depth> [field | make]");
+			return;
+		}
+
+		int depth = Integer.parseInt(args[0]);
+		String mode = args.length > 1 ? args[1].toLowerCase() : "";
+		Field field = new Field();
+
+		long own = Bitboard.START_ONE, opp = Bitboard.START_TWO;
+		long moves = Bitboard.legalMoves(own, opp);
+		long total = 0;
+		long start = System.nanoTime();
+
+		// count each first move on its own (divide), in the X-Y form players type
+		for (; moves != 0; moves &= moves - 1) {
+			int move = Long.numberOfTrailingZeros(moves);
+			long flips = Bitboard.flips(own, opp, move);
+			long count;
+
+			if (depth == 0)
+				count = 0;
+			else if (mode.equals("field"))
+				count = perftField(field, own | flips | (1L << move), opp & ~flips,
+						Field.PLAYER_TWO, depth - 1, false);
+			else if (mode.equals("make")) {
+				field.makeMove(move);
+				count = perftMake(field, depth - 1, false);
+				field.unmakeMove(move, flips);
+			}
+			else
+				count = perft(opp & ~flips, own | flips | (1L << move), depth - 1, false);
+
+			total += count;
+			System.out.println((Bitboard.x(move) + 1) + "-" + (Bitboard.y(move) + 1) + ": " + count);
+		}
+
+		if (depth == 0)
+			total = 1;
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("\nDepth " + depth + ": " + total + " positions");
+		System.out.printf("Time: %.3f s, %.0f positions per second%n", seconds, total / seconds);
+
+		// check against the published count
+		if (depth < KNOWN.length)
+			System.out.println(total == KNOWN[depth] ? "Matches the published count."
+					: "MISMATCH, the published count is " + KNOWN[depth] + ".");
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This interface is a computer player that can play without any input
+ * or output, so games can be run in bulk. Players are made by name, and
+ * each one is reused for many games in a row.
+ */
+
+public interface Player {
+
+	// called before every game, the seed makes the game repeatable
+	void newGame(long seed);
+
+	// gives the square to play for the player owning own, given there is a legal move
+	int chooseMove(long own, long opp, int player);
+
+	static Player create(String name) {
+		// makes a player from its name: easy, hard, expert with an optional depth (expert:6),
+		// mcts with an optional number of playouts (mcts:20000), or neural with an optional depth
+
+		// a depth or number of playouts below 1 would never finish, so isValid turns it away
+		if (!isValid(name))
+			throw new IllegalArgumentException("Unknown player: " + name);
+
+		String lower = name.toLowerCase();
+
+		if (lower.equals("easy"))
+			return new RandomPlayer();
+		else if (lower.equals("hard"))
+			return new GreedyPlayer();
+		else if (lower.equals("expert"))
+			return new SearchPlayer(SearchPlayer.DEFAULT_DEPTH);
+		else if (lower.startsWith("expert:"))
+			return new SearchPlayer(Integer.parseInt(lower.substring("expert:".length())));
+		else if (lower.equals("neural") || lower.startsWith("neural:")) {
+			NetworkEvaluator.loadDefaultWeights();
+			int depth = lower.equals("neural") ? SearchPlayer.DEFAULT_DEPTH
+					: Integer.parseInt(lower.substring("neural:".length()));
+			return new SearchPlayer(depth, new NetworkEvaluator());
+		} else if (lower.equals("mcts"))
+			return new MonteCarloPlayer(MonteCarloSearch.DEFAULT_PLAYOUTS);
+		else if (lower.startsWith("mcts:"))
+			return new MonteCarloPlayer(Integer.parseInt(lower.substring("mcts:".length())));
+
+		throw new IllegalArgumentException("Unknown player: " + name);
+	}
+
+	static boolean isValid(String name) {
+		// tells whether create would take the name, without making the player
+
+		String lower = name.toLowerCase();
+		int colon = lower.indexOf(':');
+		if (colon < 0)
+			return lower.equals("easy") || lower.equals("hard") || lower.equals("expert") || lower.equals("neural")
+					|| lower.equals("mcts");
+
+		String kind = lower.substring(0, colon);
+		if (!kind.equals("expert") && !kind.equals("neural") && !kind.equals("mcts"))
+			return false;
+		try {
+			return Integer.parseInt(lower.substring(colon + 1)) >= 1;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+}
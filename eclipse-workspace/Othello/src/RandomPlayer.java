@@ -0,0 +1,27 @@
+import java.util.Random;
+
+/*
+ * This class plays a random legal move, like the easy computer.
+ */
+
+public class RandomPlayer implements Player {
+
+	private Random random = new Random();
+
+	@Override
+	public void newGame(long seed) {
+		random.setSeed(seed);
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int player) {
+		long moves = Bitboard.legalMoves(own, opp);
+
+		// skip a random number of moves and take the next one
+		for (int skip = random.nextInt(Bitboard.count(moves)); skip > 0; skip--)
+			moves &= moves - 1;
+
+		return Long.numberOfTrailingZeros(moves);
+	}
+
+}
@@ -0,0 +1,456 @@
+/*
+ * This class searches for the computer's move. It uses negamax with
+ * alpha-beta pruning, and deepens one ply at a time until it reaches
+ * its depth limit or runs out of nodes, so there is always a move from
+ * the last finished depth to fall back on. Results are kept in a
+ * transposition table, which also carries them over between moves.
+ * Positions at the end of the search are judged by an Evaluator, a
+ * PatternEvaluator unless another is set, which is updated as each move
+ * is made and taken back. With an AnalysisCache, deep results are also
+ * looked up in and kept in a file, so they carry over between runs.
+ */
+
+public class Search {
+
+	// score given to a won game, higher than any evaluation can reach
+	public static final int WIN = 10000;
+
+	// bounds for the alpha-beta window
+	private static final int INFINITY = WIN * 2;
+
+	// weight of having more moves than the opponent, added to the pattern score
+	private static final int MOBILITY_WEIGHT = 10;
+
+	// moves are tried corners first and next to corners last
+	private static final long[] MOVE_ORDER = {
+			0x8100000000000081L, // corners
+			0x3C0081818181003CL, // edges
+			0x00003C3C3C3C0000L, // center
+			0x003C424242423C00L, // squares around the center
+			0x4281000000008142L, // squares next to the corners on the edges
+			0x0042000000004200L  // squares diagonal from the corners
+	};
+
+	// remembers results between positions and between moves
+	private TranspositionTable table;
+
+	// deep results from earlier runs, if there is a cache
+	private AnalysisCache cache;
+
+	// scores positions at the leaves, kept up to date as moves are made and taken back
+	private Evaluator evaluator = new PatternEvaluator();
+
+	// limits for each search
+	private int maxDepth;
+	private long nodeLimit;
+	private long timeLimit;
+
+	// the depth the first iteration starts at, helper threads start at different depths
+	private int startDepth = 1;
+
+	// when the search has to stop by, in milliseconds
+	private long deadline;
+
+	// set from another thread to stop the search early
+	private volatile boolean aborted;
+
+	// results of the last search
+	private long nodes;
+	private int depthReached;
+	private int score;
+	private boolean stopped;
+
+	// what the last search cost, counted as plain fields since they are only read
+	// after the search, and only if someone asks
+	private long moveGenerations;
+	private long flips;
+	private long evaluations;
+	private long probes;
+	private long hits;
+
+	// when the first depth finished
+	private long firstMoveTime;
+
+	public Search(TranspositionTable table, int maxDepth, long nodeLimit) {
+		this.table = table;
+		this.maxDepth = maxDepth;
+		this.nodeLimit = nodeLimit;
+	}
+
+	public Search(TranspositionTable table, int maxDepth, long nodeLimit, long timeLimit) {
+		this(table, maxDepth, nodeLimit);
+		this.timeLimit = timeLimit;
+	}
+
+	public int findMove(long own, long opp, int player) {
+		// hashes the position once, then searches it
+		long hash = player == Field.PLAYER_ONE ? Zobrist.hash(own, opp, player)
+				: Zobrist.hash(opp, own, player);
+		return findMove(own, opp, hash, player);
+	}
+
+	public int findMove(long own, long opp, long hash, int player) {
+		// gives the best square for the player owning own, or -1 if there are no moves
+		table.newSearch();
+		return search(own, opp, hash, player);
+	}
+
+	int search(long own, long opp, long hash, int player) {
+		// findMove without ageing the table, for searches sharing a table that is aged once for all of them
+
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		nodes = 0;
+		depthReached = 0;
+		score = 0;
+		stopped = aborted;
+		long start = System.currentTimeMillis();
+		deadline = timeLimit > 0 ? start + timeLimit : Long.MAX_VALUE;
+
+		moveGenerations = 1;
+		flips = 0;
+		evaluations = 0;
+		probes = 1;
+		hits = 0;
+		firstMoveTime = -1;
+
+		long moves = Bitboard.legalMoves(own, opp);
+		if (moves == 0)
+			return -1;
+
+		if (player == Field.PLAYER_ONE)
+			evaluator.setPosition(own, opp);
+		else
+			evaluator.setPosition(opp, own);
+
+		// start with the remembered move, or any legal move, in case the first depth is cut short
+		int bestMove = Long.numberOfTrailingZeros(moves);
+		long entry = cached(table.probe(hash), hash, maxDepth);
+		if (entry != 0)
+			hits++;
+
+		// an exact result from the cache as deep as this search would go is the answer
+		if (cache != null && entry != 0 && TranspositionTable.bound(entry) == TranspositionTable.EXACT
+				&& TranspositionTable.depth(entry) >= maxDepth && isMove(moves, TranspositionTable.move(entry))) {
+			depthReached = TranspositionTable.depth(entry);
+			score = TranspositionTable.score(entry);
+			return TranspositionTable.move(entry);
+		}
+
+		if (entry != 0 && isMove(moves, TranspositionTable.move(entry)))
+			bestMove = TranspositionTable.move(entry);
+
+		for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+
+			int alpha = -INFINITY;
+			int depthBest = -1;
+
+			// try the best move from the last depth first
+			int first = bestMove;
+			long remaining = moves & ~(1L << first);
+			int move = first;
+
+			while (true) {
+				int value = -child(own, opp, hash, player, other, move, depth - 1, -INFINITY, -alpha);
+
+				if (stopped)
+					break;
+
+				if (value > alpha) {
+					alpha = value;
+					depthBest = move;
+				}
+
+				if (remaining == 0)
+					break;
+				move = nextMove(remaining);
+				remaining &= ~(1L << move);
+			}
+
+			// an unfinished depth can still be used if it found a better first move
+			if (depthBest != -1 && (!stopped || depthBest != first)) {
+				bestMove = depthBest;
+				score = alpha;
+			}
+
+			if (stopped)
+				break;
+			depthReached = depth;
+			if (firstMoveTime < 0)
+				firstMoveTime = System.currentTimeMillis() - start;
+			table.store(hash, depth, TranspositionTable.EXACT, alpha, bestMove);
+			if (cache != null)
+				cache.store(hash, depth, TranspositionTable.EXACT, alpha, bestMove);
+
+			// no need to go deeper once the end of the game has been seen
+			if (Math.abs(alpha) >= WIN - Bitboard.SQUARES)
+				break;
+		}
+
+		return bestMove;
+	}
+
+	public int scoreMove(long own, long opp, long hash, int player, int move, int depth) {
+		// gives the exact score of one legal move searched to the depth, for the player owning own,
+		// so every move can be scored instead of just the best found; check isStopped after
+
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		nodes = 0;
+		stopped = aborted;
+		deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+
+		if (player == Field.PLAYER_ONE)
+			evaluator.setPosition(own, opp);
+		else
+			evaluator.setPosition(opp, own);
+
+		return -child(own, opp, hash, player, other, move, depth - 1, -INFINITY, INFINITY);
+	}
+
+	public boolean isStopped() {
+		// whether the last search was cut short, so its score can't be trusted
+		return stopped;
+	}
+
+	private int negamax(long own, long opp, long hash, int player,
+			int depth, int alpha, int beta, boolean passed) {
+
+		nodes++;
+		if (aborted || (nodeLimit > 0 && nodes >= nodeLimit))
+			stopped = true;
+
+		// only look at the clock every so often
+		if ((nodes & 1023) == 0 && System.currentTimeMillis() >= deadline)
+			stopped = true;
+
+		if (stopped)
+			return 0;
+
+		long moves = Bitboard.legalMoves(own, opp);
+		moveGenerations++;
+		int other = player == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+
+		if (moves == 0) {
+
+			// the game is over if neither player can move
+			if (passed)
+				return finalScore(own, opp);
+
+			// otherwise the turn goes to the other player
+			return -negamax(opp, own, hash ^ Zobrist.SIDE, other, depth, -beta, -alpha, true);
+		}
+
+		if (depth <= 0)
+			return evaluate(own, opp, player, moves);
+
+		// use what is remembered about this position
+		int hashMove = TranspositionTable.NO_MOVE;
+		long entry = cached(table.probe(hash), hash, depth);
+		probes++;
+		if (entry != 0) {
+			hits++;
+			hashMove = TranspositionTable.move(entry);
+
+			if (TranspositionTable.depth(entry) >= depth) {
+				int value = TranspositionTable.score(entry);
+				int bound = TranspositionTable.bound(entry);
+
+				// the remembered score is enough if it is exact or outside the window
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && value >= beta)
+						|| (bound == TranspositionTable.UPPER && value <= alpha))
+					return value;
+			}
+		}
+
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = TranspositionTable.NO_MOVE;
+
+		// try the remembered move before the rest
+		if (isMove(moves, hashMove)) {
+			best = -child(own, opp, hash, player, other, hashMove, depth - 1, -beta, -alpha);
+			bestMove = hashMove;
+
+			if (best > alpha)
+				alpha = best;
+			moves &= ~(1L << hashMove);
+		}
+
+		for (int group = 0; group < MOVE_ORDER.length && alpha < beta; group++) {
+			long groupMoves = moves & MOVE_ORDER[group];
+
+			while (groupMoves != 0) {
+				int move = Long.numberOfTrailingZeros(groupMoves);
+				groupMoves &= groupMoves - 1;
+
+				int value = -child(own, opp, hash, player, other, move, depth - 1, -beta, -alpha);
+
+				if (value > best) {
+					best = value;
+					bestMove = move;
+					if (value > alpha) {
+						alpha = value;
+						if (alpha >= beta)
+							break;
+					}
+				}
+			}
+		}
+
+		// remember the result unless the search was cut short
+		if (!stopped) {
+			int bound = best <= originalAlpha ? TranspositionTable.UPPER
+					: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(hash, depth, bound, best, bestMove);
+			if (cache != null)
+				cache.store(hash, depth, bound, best, bestMove);
+		}
+
+		return best;
+	}
+
+	private long cached(long entry, long hash, int depth) {
+		// gives the cache's result instead of the table's when it is deeper, copying it into the table
+
+		if (cache == null || depth < cache.getMinDepth()
+				|| (entry != 0 && TranspositionTable.depth(entry) >= depth))
+			return entry;
+
+		long cached = cache.probe(hash);
+		if (cached == 0 || (entry != 0 && TranspositionTable.depth(cached) <= TranspositionTable.depth(entry)))
+			return entry;
+
+		table.store(hash, TranspositionTable.depth(cached), TranspositionTable.bound(cached),
+				TranspositionTable.score(cached), TranspositionTable.move(cached));
+		return cached;
+	}
+
+	private int child(long own, long opp, long hash, int player, int other,
+			int move, int depth, int alpha, int beta) {
+		// makes a move, searches the position after it for the other player, and takes it back
+
+		long flips = Bitboard.flips(own, opp, move);
+		this.flips++;
+		evaluator.play(player, move, flips);
+		int value = negamax(opp & ~flips, own | flips | (1L << move),
+				hash ^ Zobrist.move(player, move, flips), other, depth, alpha, beta, false);
+		evaluator.undo(player, move, flips);
+		return value;
+	}
+
+	private static boolean isMove(long moves, int move) {
+		// checks that a remembered move is one of the legal moves
+		return move < Bitboard.SQUARES && (moves & (1L << move)) != 0;
+	}
+
+	private static int nextMove(long moves) {
+		// gives the first move in the move order
+		for (int group = 0; group < MOVE_ORDER.length; group++)
+			if ((moves & MOVE_ORDER[group]) != 0)
+				return Long.numberOfTrailingZeros(moves & MOVE_ORDER[group]);
+		return Long.numberOfTrailingZeros(moves);
+	}
+
+	static int finalScore(long own, long opp) {
+		// scores a finished game, the winner always scores above any evaluation
+		int diff = Bitboard.count(own) - Bitboard.count(opp);
+		if (diff > 0)
+			return WIN + diff;
+		else if (diff < 0)
+			return -WIN + diff;
+		return 0;
+	}
+
+	private int evaluate(long own, long opp, int player, long moves) {
+		// judges a position from the point of view of the player owning own
+
+		long oppMoves = Bitboard.legalMoves(opp, own);
+		moveGenerations++;
+		evaluations++;
+
+		// the patterns on the field, and having more moves than the opponent is good
+		return evaluator.evaluate(player)
+				+ MOBILITY_WEIGHT * (Bitboard.count(moves) - Bitboard.count(oppMoves));
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public int getDepth() {
+		return depthReached;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public long getMoveGenerations() {
+		return moveGenerations;
+	}
+
+	public long getFlips() {
+		return flips;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public double getBranchingFactor() {
+		// the effective branching factor, the number of moves per position that a full tree
+		// of the depth reached would need to have as many nodes, 0 before any depth finished
+		return depthReached > 0 ? Math.pow(nodes, 1.0 / depthReached) : 0;
+	}
+
+	public long getFirstMoveTime() {
+		// milliseconds until the first depth finished and there was a searched move, -1 if it never did
+		return firstMoveTime;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public void setCache(AnalysisCache cache) {
+		this.cache = cache;
+	}
+
+	public void setEvaluator(Evaluator evaluator) {
+		// each search needs an evaluator of its own, since it keeps the position
+		this.evaluator = evaluator;
+	}
+
+	void setStartDepth(int startDepth) {
+		this.startDepth = startDepth;
+	}
+
+	public void abort() {
+		// stops a running search from another thread, the search returns its best move so far
+		aborted = true;
+	}
+
+	public void resume() {
+		// lets searches run again after abort
+		aborted = false;
+	}
+
+}
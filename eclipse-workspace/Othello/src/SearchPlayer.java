@@ -0,0 +1,38 @@
+/*
+ * This class plays the move found by a fixed depth search, on one
+ * thread so many games can run side by side. The table is cleared for
+ * every game, so the same seed always gives the same game.
+ */
+
+public class SearchPlayer implements Player {
+
+	// how deep the expert searches when no depth is given
+	public static final int DEFAULT_DEPTH = 4;
+
+	// each player only needs a small table for a shallow search
+	private static final int HASH_MB = 1;
+
+	private TranspositionTable table;
+	private Search search;
+
+	public SearchPlayer(int depth) {
+		table = new TranspositionTable(HASH_MB);
+		search = new Search(table, depth, 0);
+	}
+
+	public SearchPlayer(int depth, Evaluator evaluator) {
+		this(depth);
+		search.setEvaluator(evaluator);
+	}
+
+	@Override
+	public void newGame(long seed) {
+		table.clear();
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int player) {
+		return search.findMove(own, opp, player);
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * This class is a VariantBoard of up to 8x8, with each player's pieces in
+ * one long. Moves are found like Bitboard.legalMoves, growing lines of
+ * the other player's pieces out from the player's in each direction,
+ * but with the edge masks and the number of steps worked out for the
+ * size of the field.
+ */
+
+public final class SmallBoard extends VariantBoard {
+
+	// every square of the field
+	private final long board;
+
+	// the steps that shift towards higher squares (east, south, south east, south west),
+	// and the squares each may land on going up, and going down the opposite way
+	private final int[] shifts;
+	private final long[] upMasks, downMasks;
+
+	private long one, two;
+
+	SmallBoard(int size) {
+		super(size);
+
+		board = squares == Long.SIZE ? -1L : (1L << squares) - 1;
+
+		// a step east can't land on the first column, and a step west not on the last
+		long firstColumn = 0, lastColumn = 0;
+		for (int y = 0; y < size; y++) {
+			firstColumn |= 1L << index(0, y);
+			lastColumn |= 1L << index(size - 1, y);
+		}
+		long notFirst = board & ~firstColumn, notLast = board & ~lastColumn;
+
+		shifts = new int[] { 1, size, size + 1, size - 1 };
+		upMasks = new long[] { notFirst, board, notFirst, notLast };
+		downMasks = new long[] { notLast, board, notLast, notFirst };
+	}
+
+	@Override
+	protected void clear() {
+		one = 0;
+		two = 0;
+	}
+
+	@Override
+	public void set(int player, int square) {
+		long bit = 1L << square;
+		if (player == Field.PLAYER_ONE) {
+			one |= bit;
+			two &= ~bit;
+		} else {
+			two |= bit;
+			one &= ~bit;
+		}
+	}
+
+	@Override
+	public int getPiece(int square) {
+		if ((one >>> square & 1) != 0)
+			return Field.PLAYER_ONE;
+		return (two >>> square & 1) != 0 ? Field.PLAYER_TWO : Field.EMPTY;
+	}
+
+	@Override
+	public int count(int player) {
+		return Long.bitCount(player == Field.PLAYER_ONE ? one : two);
+	}
+
+	public long getPieces(int player) {
+		return player == Field.PLAYER_ONE ? one : two;
+	}
+
+	public long legalMoves(int player) {
+		// every legal move of the player as one long
+
+		long own = player == Field.PLAYER_ONE ? one : two;
+		long opp = player == Field.PLAYER_ONE ? two : one;
+		long moves = 0;
+
+		for (int d = 0; d < shifts.length; d++) {
+			int s = shifts[d];
+			long upMask = upMasks[d], downMask = downMasks[d];
+			long up = opp & upMask, down = opp & downMask;
+
+			// lines can be up to size - 2 long, one step is taken to start them
+			long upLine = up & (own << s), downLine = down & (own >>> s);
+			for (int i = 3; i < size; i++) {
+				upLine |= up & (upLine << s);
+				downLine |= down & (downLine >>> s);
+			}
+
+			moves |= (upMask & (upLine << s)) | (downMask & (downLine >>> s));
+		}
+
+		return moves & ~(one | two) & board;
+	}
+
+	@Override
+	public int legalMoves(int player, int[] moves) {
+		int count = 0;
+		for (long b = legalMoves(player); b != 0; b &= b - 1)
+			moves[count++] = Long.numberOfTrailingZeros(b);
+		return count;
+	}
+
+	@Override
+	public boolean hasMoves(int player) {
+		return legalMoves(player) != 0;
+	}
+
+}
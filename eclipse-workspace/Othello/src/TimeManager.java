@@ -0,0 +1,91 @@
+/*
+ * This class decides how long the engine thinks about each move, given
+ * the time left on its clock and the time added after every move. The
+ * time left is shared out over the moves the engine still has to make,
+ * with a little kept back for answering commands, and solving the end
+ * of the game may take a few shares since it finishes the game.
+ * Without a clock, every move gets the same fixed time.
+ */
+
+public class TimeManager {
+
+	// kept back on the clock for each move still to make, for reading and answering
+	private static final long OVERHEAD = 30;
+
+	// how many shares of the time solving the end of the game may take
+	private static final int SOLVE_SHARES = 4;
+
+	// how much of the increment is spent on the move it is added for
+	private static final double INCREMENT_USE = 0.75;
+
+	// the time for a move without a clock
+	private long moveTime;
+
+	// the time left on the clock and added after each move, in milliseconds,
+	// remaining is negative while there is no clock
+	private long remaining = -1;
+	private long increment;
+
+	public TimeManager(long moveTime) {
+		this.moveTime = moveTime;
+	}
+
+	public void setClock(long remaining, long increment) {
+		this.remaining = remaining;
+		this.increment = increment;
+	}
+
+	public void setRemaining(long remaining) {
+		// corrects the clock from what the other side says is left
+		this.remaining = remaining;
+	}
+
+	public void setMoveTime(long moveTime) {
+		this.moveTime = moveTime;
+	}
+
+	public boolean hasClock() {
+		return remaining >= 0;
+	}
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	public long searchTime(int empties) {
+		// how long to search a move with the given number of empty squares
+		if (!hasClock())
+			return moveTime;
+		return Math.min(share(empties), usable(empties) / 2 + 1);
+	}
+
+	public long solveTime(int empties) {
+		// how long solving the rest of the game may take
+		if (!hasClock())
+			return moveTime * SOLVE_SHARES;
+		return Math.min(share(empties) * SOLVE_SHARES, usable(empties) / 2 + 1);
+	}
+
+	public void used(long millis) {
+		// takes a move's thinking time off the clock and adds the increment
+		if (hasClock())
+			remaining = Math.max(0, remaining - millis + increment);
+	}
+
+	private long share(int empties) {
+		// an even share of the time left, plus most of this move's increment,
+		// never 0 since that means no limit to the search
+		return Math.max(1, usable(empties) / movesLeft(empties) + (long) (increment * INCREMENT_USE));
+	}
+
+	private long usable(int empties) {
+		// the time left once enough is kept back to answer every move to come
+		return Math.max(0, remaining - OVERHEAD * movesLeft(empties));
+	}
+
+	private static int movesLeft(int empties) {
+		// each player makes about half of the moves left
+		return Math.max(1, (empties + 1) / 2);
+	}
+
+}
@@ -0,0 +1,174 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * This class plays many games between two computer players without any
+ * input or output, spread over a pool of worker threads. The players
+ * switch colors every game, and each game is seeded by its number, so
+ * the same tournament can be played again.
+ *
+ * Usage: java Tournament <games> <player A> <player B> [threads] [seed] [record file]
+ * where a player is easy, hard, expert, expert:<depth>, mcts,
+ * mcts:<playouts>, neural or neural:<depth>. With a record file, every
+ * game is written to it as one line, which is what the opening book and
+ * the network's weights are built from.
+ *
+ * Running with -Dothello.watch=<frames per second> shows the game each
+ * worker is playing, tiled across the terminal, while the tournament
+ * runs. The width of the terminal is read from COLUMNS, or taken as 80.
+ */
+
+public class Tournament {
+
+	private String playerA, playerB;
+	private int threads;
+	private long seed;
+
+	// where finished games are written, if anywhere
+	private PrintWriter records;
+
+	// where the games are shown while they're played, if anywhere
+	private BoardRenderer renderer;
+
+	public Tournament(String playerA, String playerB, int threads, long seed) {
+		this.playerA = playerA;
+		this.playerB = playerB;
+		this.threads = threads;
+		this.seed = seed;
+
+		// make sure both names are real players before any games start
+		for (String name : new String[] { playerA, playerB })
+			if (!Player.isValid(name))
+				throw new IllegalArgumentException("Unknown player: " + name);
+	}
+
+	public void setRecords(PrintWriter records) {
+		this.records = records;
+	}
+
+	public void setRenderer(BoardRenderer renderer) {
+		// worker i shows its games in tile i, so the renderer needs a tile for each thread
+		this.renderer = renderer;
+	}
+
+	public TournamentResult play(long first, long last) {
+		// plays games first up to (not including) last and adds up the results
+
+		AtomicLong next = new AtomicLong(first);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<TournamentResult>> workers = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++) {
+			int tile = i;
+			workers.add(pool.submit(() -> {
+
+				// each worker keeps its own players and takes the next game until none are left
+				Player a = Player.create(playerA);
+				Player b = Player.create(playerB);
+				TournamentResult result = new TournamentResult();
+
+				for (long game = next.getAndIncrement(); game < last; game = next.getAndIncrement())
+					result.add(playGame(a, b, game, tile));
+
+				return result;
+			}));
+		}
+
+		// merge what every worker found
+		TournamentResult total = new TournamentResult();
+		try {
+			for (Future<TournamentResult> worker : workers)
+				total.merge(worker.get());
+		} catch (Exception e) {
+			// no game is left for the other workers, and those still playing are stopped
+			next.set(last);
+			pool.shutdownNow();
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		return total;
+	}
+
+	private int playGame(Player a, Player b, long game, int tile) {
+		// plays one game and gives A's pieces minus B's pieces
+
+		long gameSeed = seed + game;
+		a.newGame(gameSeed * 2);
+		b.newGame(gameSeed * 2 + 1);
+
+		// A goes first in even games and second in odd games
+		boolean aFirst = game % 2 == 0;
+		Game played = new Game();
+		if (renderer != null)
+			played.watch(renderer, tile, game);
+		int difference = played.play(aFirst ? a : b, aFirst ? b : a);
+
+		if (records != null) {
+			String record = played.getRecord();
+			synchronized (records) {
+				records.println(record);
+			}
+		}
+
+		return aFirst ? difference : -difference;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 3) {
+			System.out.println("Usage: java Tournament <games> <player A> <player B> [threads] [seed] [record file]");
+			System.out.println("Players: easy, hard, expert, expert:<depth>, mcts, mcts:<playouts>, neural, neural:<depth>");
+			return;
+		}
+
+		long games = Long.parseLong(args[0]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+		Tournament tournament = new Tournament(args[1], args[2], threads, seed);
+		if (args.length > 5)
+			tournament.setRecords(new PrintWriter(new FileWriter(args[5])));
+
+		BoardRenderer renderer = null;
+		int framesPerSecond = Integer.getInteger("othello.watch", 0);
+		if (framesPerSecond > 0) {
+			String columns = System.getenv("COLUMNS");
+			renderer = new BoardRenderer(threads, columns != null ? Integer.parseInt(columns) : 80,
+					framesPerSecond, new FileOutputStream(FileDescriptor.out));
+			tournament.setRenderer(renderer);
+			renderer.start();
+		}
+
+		long start = System.nanoTime();
+		TournamentResult result = tournament.play(0, games);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		if (renderer != null)
+			renderer.stop();
+
+		if (tournament.records != null)
+			tournament.records.close();
+
+		System.out.println(args[1] + " vs " + args[2] + ", " + result.getGames() + " games on "
+				+ threads + " threads");
+		System.out.println(args[1] + " wins: " + result.getWinsA());
+		System.out.println(args[2] + " wins: " + result.getWinsB());
+		System.out.println("Draws: " + result.getDraws());
+		System.out.printf("Average disc differential (%s - %s): %.2f%n", args[1], args[2],
+				result.getAverageDifference());
+		System.out.printf("Games per second: %.1f%n", result.getGames() / seconds);
+	}
+
+}
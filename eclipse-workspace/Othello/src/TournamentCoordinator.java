@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * This class plays a tournament across several worker processes, so no
+ * single heap has to hold every game and a long garbage collection only
+ * holds up one worker. The games are split into shards of consecutive
+ * game numbers. Each worker is a TournamentWorker started with the same
+ * java and class path, and it takes the next shard as soon as it
+ * finishes one, sending the result back over its standard output.
+ *
+ * A worker that dies, or sends back something that can't be read, is
+ * started again, and its shard goes back in the queue. A shard that
+ * fails too often stops the tournament straight away, killing every
+ * worker still playing. Every game is seeded by its number, so a shard
+ * gives the same result in any worker, and the totals are the same for a
+ * seed however many workers play them or crash. The totals also match
+ * Tournament with the same seed.
+ *
+ * Usage: java TournamentCoordinator <games> <player A> <player B> [workers] [seed] [shard games]
+ * where the players are the ones Tournament takes. Options for the
+ * workers' java, such as their heap size, can be given with
+ * -Dothello.workerOptions="-Xmx512m ...".
+ */
+
+public class TournamentCoordinator {
+
+	// how many times a shard may be tried before giving up
+	private static final int MAX_ATTEMPTS = 3;
+
+	// shards made for each worker when no shard size is given, so faster workers take more
+	private static final int SHARDS_PER_WORKER = 8;
+
+	private String playerA, playerB;
+	private int workers;
+	private long seed;
+
+	// extra options for each worker's java
+	private List<String> workerOptions = new ArrayList<>();
+
+	// shards still to play, as { first, last }, and how often each has been tried (by first)
+	private final ConcurrentLinkedQueue<long[]> shards = new ConcurrentLinkedQueue<>();
+	private final ConcurrentHashMap<Long, Integer> attempts = new ConcurrentHashMap<>();
+
+	// workers started again after they failed
+	private final AtomicInteger restarts = new AtomicInteger();
+
+	// the worker processes running now, so they can all be killed when the tournament gives up
+	private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+
+	// set when a shard fails too often, so no worker takes another one
+	private volatile boolean aborted;
+
+	public TournamentCoordinator(String playerA, String playerB, int workers, long seed) {
+		this.playerA = playerA;
+		this.playerB = playerB;
+		this.workers = workers;
+		this.seed = seed;
+
+		// make sure both names are real players before any workers start
+		for (String name : new String[] { playerA, playerB })
+			if (!Player.isValid(name))
+				throw new IllegalArgumentException("Unknown player: " + name);
+	}
+
+	public void setWorkerOptions(List<String> workerOptions) {
+		this.workerOptions = workerOptions;
+	}
+
+	public TournamentResult play(long first, long last, long shardGames) {
+		// plays games first up to (not including) last in shards, and adds up the results
+
+		for (long start = first; start < last; start += shardGames)
+			shards.add(new long[] { start, Math.min(last, start + shardGames) });
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "coordinator");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// results are taken as workers finish, so the first one to give up is seen at once
+		CompletionService<TournamentResult> running = new ExecutorCompletionService<>(pool);
+		for (int i = 0; i < workers; i++)
+			running.submit(this::runWorker);
+
+		// merge what every worker found
+		TournamentResult total = new TournamentResult();
+		try {
+			for (int i = 0; i < workers; i++)
+				total.merge(running.take().get());
+		} catch (ExecutionException e) {
+			abort();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			abort();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		return total;
+	}
+
+	private TournamentResult runWorker() throws IOException, InterruptedException {
+		// keeps one worker process busy until there are no shards left, starting it again if it fails
+
+		TournamentResult result = new TournamentResult();
+		Process process = null;
+		BufferedReader in = null;
+		PrintWriter out = null;
+
+		try {
+			for (long[] shard = shards.poll(); shard != null && !aborted; shard = shards.poll()) {
+
+				if (process == null) {
+					process = start();
+					processes.add(process);
+
+					// the tournament may have given up while it started
+					if (aborted)
+						break;
+					in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+					out = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII));
+				}
+
+				try {
+					out.println(shard[0] + " " + shard[1]);
+					out.flush();
+					if (out.checkError())
+						throw new IOException("could not send the shard");
+
+					result.merge(read(in.readLine(), shard));
+
+				} catch (IOException e) {
+					// killed because the tournament gave up
+					if (aborted)
+						break;
+
+					// the worker is started again, and this shard goes back for any worker to take
+					System.err.println("Worker failed on games " + shard[0] + " to " + shard[1] + ": " + e.getMessage());
+					process.destroy();
+					process.waitFor();
+					processes.remove(process);
+					process = null;
+					restarts.incrementAndGet();
+
+					if (attempts.merge(shard[0], 1, Integer::sum) >= MAX_ATTEMPTS) {
+						abort();
+						throw new IOException("Games " + shard[0] + " to " + shard[1] + " failed "
+								+ MAX_ATTEMPTS + " times");
+					}
+					shards.add(shard);
+				}
+			}
+		} finally {
+			// closing its input tells the worker to stop
+			if (process != null) {
+				out.close();
+				process.waitFor();
+				processes.remove(process);
+			}
+		}
+
+		return result;
+	}
+
+	private void abort() {
+		// stops every worker, whatever it's playing
+		aborted = true;
+		shards.clear();
+		for (Process process : processes)
+			process.destroy();
+	}
+
+	private Process start() throws IOException {
+		// starts a worker with the same java and class path as this process
+
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(workerOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("TournamentWorker");
+		command.add(playerA);
+		command.add(playerB);
+		command.add(String.valueOf(seed));
+
+		return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+	}
+
+	private static TournamentResult read(String line, long[] shard) throws IOException {
+		// reads a worker's answer, which must be for the shard it was given
+
+		if (line == null)
+			throw new IOException("the worker stopped");
+
+		String[] words = line.trim().split(" ");
+		try {
+			if (words.length != 7 || Long.parseLong(words[0]) != shard[0] || Long.parseLong(words[1]) != shard[1])
+				throw new IOException("unexpected answer: " + line);
+
+			TournamentResult result = new TournamentResult(Long.parseLong(words[2]), Long.parseLong(words[3]),
+					Long.parseLong(words[4]), Long.parseLong(words[5]), Long.parseLong(words[6]));
+			if (result.getGames() != shard[1] - shard[0])
+				throw new IOException("unexpected answer: " + line);
+			return result;
+
+		} catch (NumberFormatException e) {
+			throw new IOException("unexpected answer: " + line);
+		}
+	}
+
+	public int getRestarts() {
+		return restarts.get();
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 3) {
+			System.out.println("Usage: java TournamentCoordinator <games> <player A> <player B> [workers] [seed]"
+					+ " [shard games]");
+			System.out.println("Players: easy, hard, expert, expert:<depth>, mcts, mcts:<playouts>, neural, neural:<depth>");
+			return;
+		}
+
+		long games = Long.parseLong(args[0]);
+		int workers = args.length > 3 ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		long shardGames = args.length > 5 ? Long.parseLong(args[5])
+				: Math.max(1, games / ((long) workers * SHARDS_PER_WORKER));
+
+		TournamentCoordinator coordinator = new TournamentCoordinator(args[1], args[2], workers, seed);
+		String options = System.getProperty("othello.workerOptions", "").trim();
+		if (!options.isEmpty())
+			coordinator.setWorkerOptions(Arrays.asList(options.split("\\s+")));
+
+		long start = System.nanoTime();
+		TournamentResult result = coordinator.play(0, games, shardGames);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(args[1] + " vs " + args[2] + ", " + result.getGames() + " games in " + workers
+				+ " worker processes, " + coordinator.getRestarts() + " restarted");
+		System.out.println(args[1] + " wins: " + result.getWinsA());
+		System.out.println(args[2] + " wins: " + result.getWinsB());
+		System.out.println("Draws: " + result.getDraws());
+		System.out.printf("Average disc differential (%s - %s): %.2f%n", args[1], args[2],
+				result.getAverageDifference());
+		System.out.printf("Games per second: %.1f%n", result.getGames() / seconds);
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * This class adds up the results of many games between two players,
+ * A and B. Results from different workers are merged into one.
+ */
+
+public class TournamentResult {
+
+	private long games;
+	private long winsA, winsB, draws;
+
+	// the sum of A's pieces minus B's pieces over every game
+	private long discDifference;
+
+	public TournamentResult() {
+	}
+
+	TournamentResult(long games, long winsA, long winsB, long draws, long discDifference) {
+		// a result added up somewhere else, such as in a worker process
+		this.games = games;
+		this.winsA = winsA;
+		this.winsB = winsB;
+		this.draws = draws;
+		this.discDifference = discDifference;
+	}
+
+	public void add(int difference) {
+		// adds one game, given A's pieces minus B's pieces at the end
+		games++;
+		discDifference += difference;
+
+		if (difference > 0)
+			winsA++;
+		else if (difference < 0)
+			winsB++;
+		else
+			draws++;
+	}
+
+	public void merge(TournamentResult other) {
+		games += other.games;
+		winsA += other.winsA;
+		winsB += other.winsB;
+		draws += other.draws;
+		discDifference += other.discDifference;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getWinsA() {
+		return winsA;
+	}
+
+	public long getWinsB() {
+		return winsB;
+	}
+
+	public long getDraws() {
+		return draws;
+	}
+
+	public long getDiscDifference() {
+		return discDifference;
+	}
+
+	public double getAverageDifference() {
+		return games == 0 ? 0 : (double) discDifference / games;
+	}
+
+}
@@ -0,0 +1,53 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * This class plays the games a TournamentCoordinator hands it, in a
+ * process of its own. It reads ranges of game numbers from standard
+ * input, one "<first> <last>" per line, plays them with a Tournament, and
+ * answers each on standard output with "<first> <last> <games> <wins A>
+ * <wins B> <draws> <disc difference>". Games are seeded by their number
+ * just as in Tournament, so a range gives the same result whichever
+ * worker plays it. The worker stops at the end of its input, so it also
+ * stops when the coordinator does.
+ *
+ * Usage: java TournamentWorker <player A> <player B> <seed> [threads]
+ */
+
+public class TournamentWorker {
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 3) {
+			System.err.println("Usage: java TournamentWorker <player A> <player B> <seed> [threads]");
+			System.exit(1);
+		}
+
+		long seed = Long.parseLong(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		Tournament tournament = new Tournament(args[0], args[1], threads, seed);
+
+		// only answers go to standard output, anything else goes to standard error
+		PrintStream out = new PrintStream(System.out, false, "US-ASCII");
+		System.setOut(System.err);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] words = line.trim().split(" ");
+			if (words.length != 2)
+				continue;
+
+			long first = Long.parseLong(words[0]), last = Long.parseLong(words[1]);
+			TournamentResult result = tournament.play(first, last);
+
+			out.println(first + " " + last + " " + result.getGames() + " " + result.getWinsA() + " "
+					+ result.getWinsB() + " " + result.getDraws() + " " + result.getDiscDifference());
+			out.flush();
+		}
+	}
+
+}
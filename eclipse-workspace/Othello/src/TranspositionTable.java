@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/*
+ * This class remembers search results by position hash so positions
+ * reached through different move orders are only searched once. All
+ * entries live in two preallocated long arrays, one for the hashes and
+ * one for the packed results. Each bucket has two slots: the first only
+ * gives way to deeper or newer results, the second always takes the
+ * newest one.
+ *
+ * The table is shared by every search thread without locks. Each slot
+ * stores its hash xored with its data, so a slot that was half written
+ * by another thread simply fails to match instead of giving bad data.
+ */
+
+public class TranspositionTable {
+
+	// the kind of score stored in an entry, never 0 so an empty slot can't match
+	public static final int UPPER = 1;
+	public static final int LOWER = 2;
+	public static final int EXACT = 3;
+
+	// the move stored when there isn't a best move
+	public static final int NO_MOVE = 64;
+
+	// bytes used by each entry, one long for the hash and one for the data
+	private static final int ENTRY_BYTES = 16;
+
+	// the hashes (xored with the data) and packed data of every entry, two slots per bucket
+	private final long[] keys;
+	private final long[] data;
+
+	// used to find a bucket from a hash
+	private final int bucketMask;
+
+	// counts searches so old entries can be replaced first
+	private int age;
+
+	public TranspositionTable(int megabytes) {
+
+		// round the number of buckets down to a power of two
+		long entries = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+		int buckets = Integer.highestOneBit((int) Math.max(1, Math.min(entries / 2, 1 << 29)));
+
+		keys = new long[buckets * 2];
+		data = new long[buckets * 2];
+		bucketMask = buckets - 1;
+	}
+
+	public void newSearch() {
+		// called once per move so entries from earlier moves are replaced first
+		age = (age + 1) & 0xFF;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+
+	public long probe(long hash) {
+		// gives the data stored for a hash, or 0 if there is none
+		int slot = (int) (hash & bucketMask) << 1;
+
+		// read each slot once, since another thread may be writing it
+		long entry = data[slot];
+		if ((keys[slot] ^ entry) == hash && entry != 0)
+			return entry;
+
+		entry = data[slot + 1];
+		if ((keys[slot + 1] ^ entry) == hash && entry != 0)
+			return entry;
+		return 0;
+	}
+
+	public void store(long hash, int depth, int bound, int score, int move) {
+		int slot = (int) (hash & bucketMask) << 1;
+		long entry = pack(depth, bound, score, move, age);
+
+		// the first slot keeps the deepest result, unless it is from an earlier move
+		long old = data[slot];
+		boolean same = (keys[slot] ^ old) == hash;
+		if (same || old == 0 || age(old) != age || depth >= depth(old)) {
+
+			// keep the best move when the new result doesn't have one
+			if (same && move == NO_MOVE)
+				entry = pack(depth, bound, score, move(old), age);
+
+			keys[slot] = hash ^ entry;
+			data[slot] = entry;
+		} else {
+
+			// otherwise the second slot is always replaced
+			keys[slot + 1] = hash ^ entry;
+			data[slot + 1] = entry;
+		}
+	}
+
+	static long pack(int depth, int bound, int score, int move, int age) {
+		// score in bits 0-15, depth in 16-23, bound in 24-25, move in 26-32 and age in 33-40
+		return (score & 0xFFFFL) | ((long) depth << 16) | ((long) bound << 24)
+				| ((long) move << 26) | ((long) age << 33);
+	}
+
+	public static int score(long entry) {
+		return (short) entry;
+	}
+
+	public static int depth(long entry) {
+		return (int) (entry >>> 16) & 0xFF;
+	}
+
+	public static int bound(long entry) {
+		return (int) (entry >>> 24) & 0x3;
+	}
+
+	public static int move(long entry) {
+		return (int) (entry >>> 26) & 0x7F;
+	}
+
+	private static int age(long entry) {
+		return (int) (entry >>> 33) & 0xFF;
+	}
+
+}
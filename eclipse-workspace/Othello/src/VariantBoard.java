@@ -0,0 +1,148 @@
+/*
+ * This class is a field of any even size from 4x4 to 16x16, for playing
+ * variants of the game. Fields of up to 8x8 keep each player's pieces in
+ * a single long (SmallBoard), and bigger ones in an array of longs
+ * (WideBoard). Either way, squares are numbered y * size + x, and every
+ * move is found for the whole field at once by shifting the pieces in
+ * each direction, the same way Bitboard does for the 8x8 field.
+ *
+ * Nothing is allocated while playing: moves and flipped squares are
+ * written into arrays the caller passes in. A board is changed by play,
+ * so each game (and each thread) needs a board of its own.
+ */
+
+public abstract class VariantBoard {
+
+	public static final int MIN_SIZE = 4;
+	public static final int MAX_SIZE = 16;
+
+	// the steps to the next square in each direction, as (x, y)
+	static final int[] DX = { 1, -1, 0, 0, 1, -1, 1, -1 };
+	static final int[] DY = { 0, 0, 1, -1, 1, -1, -1, 1 };
+
+	protected final int size;
+	protected final int squares;
+
+	protected VariantBoard(int size) {
+		this.size = size;
+		this.squares = size * size;
+	}
+
+	public static VariantBoard create(int size) {
+		// makes an empty field of the given size, with the four pieces in the middle
+
+		if (size < MIN_SIZE || size > MAX_SIZE || size % 2 != 0)
+			throw new IllegalArgumentException("The field must be an even size from " + MIN_SIZE + " to "
+					+ MAX_SIZE + ", not " + size);
+
+		VariantBoard board = size * size <= Long.SIZE ? new SmallBoard(size) : new WideBoard(size);
+		board.reset();
+		return board;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getSquares() {
+		return squares;
+	}
+
+	public int index(int x, int y) {
+		return y * size + x;
+	}
+
+	public int x(int index) {
+		return index % size;
+	}
+
+	public int y(int index) {
+		return index / size;
+	}
+
+	public void reset() {
+		// clears the field and sets up the starting position, player one on the diagonal like Bitboard
+		clear();
+		int middle = size / 2;
+		set(Field.PLAYER_ONE, index(middle - 1, middle - 1));
+		set(Field.PLAYER_ONE, index(middle, middle));
+		set(Field.PLAYER_TWO, index(middle, middle - 1));
+		set(Field.PLAYER_TWO, index(middle - 1, middle));
+	}
+
+	protected abstract void clear();
+
+	// makes the square the player's, whatever was on it
+	public abstract void set(int player, int square);
+
+	// EMPTY, PLAYER_ONE or PLAYER_TWO
+	public abstract int getPiece(int square);
+
+	public abstract int count(int player);
+
+	// writes the player's legal moves into moves, giving how many there are
+	public abstract int legalMoves(int player, int[] moves);
+
+	public abstract boolean hasMoves(int player);
+
+	public boolean isLegal(int player, int square) {
+		return getPiece(square) == Field.EMPTY && flipCount(player, square) > 0;
+	}
+
+	public int flipCount(int player, int square) {
+		// the pieces a move would flip, found by walking out from the square
+		int count = 0;
+		for (int direction = 0; direction < DX.length; direction++)
+			count += line(player, square, direction);
+		return count;
+	}
+
+	public int flips(int player, int square, int[] flipped) {
+		// writes the squares a move would flip into flipped, giving how many there are
+		int count = 0;
+		for (int direction = 0; direction < DX.length; direction++) {
+			int length = line(player, square, direction);
+			for (int i = 1, step = DY[direction] * size + DX[direction]; i <= length; i++)
+				flipped[count++] = square + step * i;
+		}
+		return count;
+	}
+
+	public int play(int player, int square) {
+		// puts the player's piece on a legal square and flips what it closes off, giving how many were flipped
+		int count = 0;
+		for (int direction = 0; direction < DX.length; direction++) {
+			int length = line(player, square, direction);
+			for (int i = 1, step = DY[direction] * size + DX[direction]; i <= length; i++)
+				set(player, square + step * i);
+			count += length;
+		}
+		set(player, square);
+		return count;
+	}
+
+	private int line(int player, int square, int direction) {
+		// the length of the other player's line from the square in one direction, if the player closes it
+
+		int x = x(square) + DX[direction], y = y(square) + DY[direction];
+		int length = 0;
+
+		while (x >= 0 && y >= 0 && x < size && y < size) {
+			int piece = getPiece(index(x, y));
+			if (piece == player)
+				return length;
+			if (piece == Field.EMPTY)
+				return 0;
+			length++;
+			x += DX[direction];
+			y += DY[direction];
+		}
+
+		return 0;
+	}
+
+	public boolean isGameOver() {
+		return !hasMoves(Field.PLAYER_ONE) && !hasMoves(Field.PLAYER_TWO);
+	}
+
+}
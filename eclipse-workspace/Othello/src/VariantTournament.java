@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * This class plays many games between two simple computer players on a
+ * field of another size, the way Tournament does on the 8x8 field. Each
+ * worker keeps one board and one array of moves for all of its games, so
+ * nothing is allocated while a game is played.
+ *
+ * Usage: java VariantTournament <size> <games> <player A> <player B> [threads] [seed]
+ * where the size is even, from 4 to 16, and a player is easy or hard.
+ */
+
+public class VariantTournament {
+
+	private int size;
+	private boolean greedyA, greedyB;
+	private int threads;
+	private long seed;
+
+	public VariantTournament(int size, String playerA, String playerB, int threads, long seed) {
+		// checks the size before any games start
+		VariantBoard.create(size);
+
+		this.size = size;
+		this.greedyA = isGreedy(playerA);
+		this.greedyB = isGreedy(playerB);
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	private static boolean isGreedy(String name) {
+		// only the easy and hard players can play on other sizes
+		String lower = name.toLowerCase();
+		if (lower.equals("hard"))
+			return true;
+		if (lower.equals("easy"))
+			return false;
+		throw new IllegalArgumentException("Only easy and hard can play on other sizes, not " + name);
+	}
+
+	public TournamentResult play(long first, long last) {
+		// plays games first up to (not including) last and adds up the results
+
+		AtomicLong next = new AtomicLong(first);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<TournamentResult>> workers = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++) {
+			workers.add(pool.submit(() -> {
+				VariantBoard board = VariantBoard.create(size);
+				int[] moves = new int[board.getSquares()];
+				Random random = new Random();
+				TournamentResult result = new TournamentResult();
+
+				for (long game = next.getAndIncrement(); game < last; game = next.getAndIncrement())
+					result.add(playGame(board, moves, random, game));
+
+				return result;
+			}));
+		}
+
+		// merge what every worker found
+		TournamentResult total = new TournamentResult();
+		try {
+			for (Future<TournamentResult> worker : workers)
+				total.merge(worker.get());
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		return total;
+	}
+
+	private int playGame(VariantBoard board, int[] moves, Random random, long game) {
+		// plays one game and gives A's pieces minus B's pieces
+
+		random.setSeed(seed + game);
+		board.reset();
+
+		// A goes first in even games and second in odd games
+		boolean aFirst = game % 2 == 0;
+		int turn = Field.PLAYER_ONE;
+		boolean passed = false;
+
+		while (true) {
+			int count = board.legalMoves(turn, moves);
+
+			if (count == 0) {
+				// the game ends when both players have to pass
+				if (passed)
+					break;
+				passed = true;
+			} else {
+				passed = false;
+				boolean greedy = (turn == Field.PLAYER_ONE) == aFirst ? greedyA : greedyB;
+				board.play(turn, greedy ? mostFlips(board, turn, moves, count) : moves[random.nextInt(count)]);
+			}
+
+			turn = turn == Field.PLAYER_ONE ? Field.PLAYER_TWO : Field.PLAYER_ONE;
+		}
+
+		int difference = board.count(Field.PLAYER_ONE) - board.count(Field.PLAYER_TWO);
+		return aFirst ? difference : -difference;
+	}
+
+	static int mostFlips(VariantBoard board, int player, int[] moves, int count) {
+		// the move that flips the most pieces, the first one found on a tie
+		int best = moves[0], highest = -1;
+		for (int i = 0; i < count; i++) {
+			int flipped = board.flipCount(player, moves[i]);
+			if (flipped > highest) {
+				highest = flipped;
+				best = moves[i];
+			}
+		}
+		return best;
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 4) {
+			System.out.println("Usage: java VariantTournament <size> <games> <player A> <player B> [threads] [seed]");
+			System.out.println("Players: easy, hard");
+			return;
+		}
+
+		int size = Integer.parseInt(args[0]);
+		long games = Long.parseLong(args[1]);
+		int threads = args.length > 4 ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+		VariantTournament tournament = new VariantTournament(size, args[2], args[3], threads, seed);
+
+		long start = System.nanoTime();
+		TournamentResult result = tournament.play(0, games);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(args[2] + " vs " + args[3] + " on " + size + "x" + size + ", " + result.getGames()
+				+ " games on " + threads + " threads");
+		System.out.println(args[2] + " wins: " + result.getWinsA());
+		System.out.println(args[3] + " wins: " + result.getWinsB());
+		System.out.println("Draws: " + result.getDraws());
+		System.out.printf("Average disc differential (%s - %s): %.2f%n", args[2], args[3],
+				result.getAverageDifference());
+		System.out.printf("Games per second: %.1f%n", result.getGames() / seconds);
+	}
+
+}
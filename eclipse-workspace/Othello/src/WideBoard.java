@@ -0,0 +1,158 @@
+/*
+ * This class is a VariantBoard bigger than 8x8, with each player's pieces
+ * in an array of longs read as one long row of bits. Moves are found the
+ * same way as on a SmallBoard, with each shift carrying the bits that
+ * fall off the end of one long into the next. The arrays the shifts work
+ * in are made once with the board, so finding moves allocates nothing.
+ */
+
+public final class WideBoard extends VariantBoard {
+
+	// the longs each set of squares takes
+	private final int words;
+
+	// every square of the field
+	private final long[] board;
+
+	// the step of each direction, and the squares it may land on
+	private final int[] steps;
+	private final long[][] masks;
+
+	private final long[] one, two;
+
+	// working arrays for finding moves
+	private final long[] empty, moves, line;
+
+	WideBoard(int size) {
+		super(size);
+
+		words = (squares + Long.SIZE - 1) / Long.SIZE;
+		board = new long[words];
+		for (int square = 0; square < squares; square++)
+			board[square >>> 6] |= 1L << square;
+
+		steps = new int[DX.length];
+		masks = new long[DX.length][words];
+		for (int d = 0; d < DX.length; d++) {
+			steps[d] = DY[d] * size + DX[d];
+
+			// a step east can't land on the first column, and a step west not on the last
+			for (int square = 0; square < squares; square++)
+				if (!(DX[d] == 1 && x(square) == 0) && !(DX[d] == -1 && x(square) == size - 1))
+					masks[d][square >>> 6] |= 1L << square;
+		}
+
+		one = new long[words];
+		two = new long[words];
+		empty = new long[words];
+		moves = new long[words];
+		line = new long[words];
+	}
+
+	@Override
+	protected void clear() {
+		for (int i = 0; i < words; i++) {
+			one[i] = 0;
+			two[i] = 0;
+		}
+	}
+
+	@Override
+	public void set(int player, int square) {
+		long bit = 1L << square;
+		int word = square >>> 6;
+		if (player == Field.PLAYER_ONE) {
+			one[word] |= bit;
+			two[word] &= ~bit;
+		} else {
+			two[word] |= bit;
+			one[word] &= ~bit;
+		}
+	}
+
+	@Override
+	public int getPiece(int square) {
+		int word = square >>> 6;
+		if ((one[word] >>> square & 1) != 0)
+			return Field.PLAYER_ONE;
+		return (two[word] >>> square & 1) != 0 ? Field.PLAYER_TWO : Field.EMPTY;
+	}
+
+	@Override
+	public int count(int player) {
+		long[] pieces = player == Field.PLAYER_ONE ? one : two;
+		int count = 0;
+		for (long word : pieces)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	private void findMoves(int player) {
+		// fills moves with every legal move of the player
+
+		long[] own = player == Field.PLAYER_ONE ? one : two;
+		long[] opp = player == Field.PLAYER_ONE ? two : one;
+		for (int i = 0; i < words; i++) {
+			empty[i] = ~(one[i] | two[i]) & board[i];
+			moves[i] = 0;
+		}
+
+		for (int d = 0; d < steps.length; d++) {
+			int step = steps[d];
+			long[] mask = masks[d];
+
+			// each step only the ends of the lines move on, and most lines are short,
+			// so it stops as soon as none are left instead of always going size - 2 steps
+			for (int i = 0; i < words; i++)
+				line[i] = own[i];
+			// the first step lands next to the player's own pieces, where no move can be
+			if (advance(opp, step, mask, false) != 0)
+				while (advance(opp, step, mask, true) != 0);
+		}
+	}
+
+	private long advance(long[] opp, int step, long[] mask, boolean reach) {
+		// moves the ends of the lines step squares along, carrying bits between longs, adds the empty
+		// squares they reach to moves if reach is set, and keeps the ends on the other player's pieces, giving them all or'ed
+
+		long left = 0;
+		if (step > 0) {
+			// going up, each long is done before the one below it is changed
+			for (int i = words - 1; i >= 0; i--) {
+				long next = ((line[i] << step) | (i > 0 ? line[i - 1] >>> (Long.SIZE - step) : 0)) & mask[i];
+				if (reach)
+					moves[i] |= next & empty[i];
+				left |= line[i] = next & opp[i];
+			}
+		} else {
+			int s = -step;
+			for (int i = 0; i < words; i++) {
+				long next = ((line[i] >>> s) | (i < words - 1 ? line[i + 1] << (Long.SIZE - s) : 0)) & mask[i];
+				if (reach)
+					moves[i] |= next & empty[i];
+				left |= line[i] = next & opp[i];
+			}
+		}
+		return left;
+	}
+
+	@Override
+	public int legalMoves(int player, int[] moves) {
+		findMoves(player);
+		int count = 0;
+		for (int i = 0; i < words; i++)
+			for (long b = this.moves[i]; b != 0; b &= b - 1)
+				moves[count++] = i * Long.SIZE + Long.numberOfTrailingZeros(b);
+		return count;
+	}
+
+	@Override
+	public boolean hasMoves(int player) {
+		findMoves(player);
+		for (int i = 0; i < words; i++)
+			if (moves[i] != 0)
+				return true;
+		return false;
+	}
+
+}
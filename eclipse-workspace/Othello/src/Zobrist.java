@@ -0,0 +1,72 @@
+import java.util.Random;
+
+/*
+ * This class holds the random keys used to hash positions. A hash is
+ * the xor of one key for every piece on the field and one more key when
+ * it is player two's turn, so a move only has to xor in the squares it
+ * changes instead of hashing the whole field again.
+ */
+
+public final class Zobrist {
+
+	// the keys for a piece of each player on each square (indexed by player)
+	private static final long[][] PIECES = new long[3][Bitboard.SQUARES];
+
+	// the keys that turn a piece on a square from one player's to the other's
+	private static final long[] FLIPS = new long[Bitboard.SQUARES];
+
+	// the key added while it is player two's turn
+	public static final long SIDE;
+
+	static {
+		// a fixed seed keeps hashes the same between runs
+		Random random = new Random(0x0743E110L);
+
+		for (int i = 0; i < Bitboard.SQUARES; i++) {
+			PIECES[Field.PLAYER_ONE][i] = random.nextLong();
+			PIECES[Field.PLAYER_TWO][i] = random.nextLong();
+			FLIPS[i] = PIECES[Field.PLAYER_ONE][i] ^ PIECES[Field.PLAYER_TWO][i];
+		}
+
+		SIDE = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	public static long hash(long one, long two, int player) {
+		// hashes a whole position, only needed once when a position is set up
+		long hash = player == Field.PLAYER_TWO ? SIDE : 0;
+
+		for (long b = one; b != 0; b &= b - 1)
+			hash ^= PIECES[Field.PLAYER_ONE][Long.numberOfTrailingZeros(b)];
+		for (long b = two; b != 0; b &= b - 1)
+			hash ^= PIECES[Field.PLAYER_TWO][Long.numberOfTrailingZeros(b)];
+
+		return hash;
+	}
+
+	public static long piece(int player, int index) {
+		// the key for a piece placed on an empty square
+		return PIECES[player][index];
+	}
+
+	public static long flip(int index) {
+		// the key for a piece that changes owner
+		return FLIPS[index];
+	}
+
+	public static long flips(long flips) {
+		// the key for every piece in a mask changing owner
+		long hash = 0;
+		for (long b = flips; b != 0; b &= b - 1)
+			hash ^= FLIPS[Long.numberOfTrailingZeros(b)];
+		return hash;
+	}
+
+	public static long move(int player, int index, long flips) {
+		// the change to a hash when a player moves on a square and passes the turn
+		return PIECES[player][index] ^ flips(flips) ^ SIDE;
+	}
+
+}